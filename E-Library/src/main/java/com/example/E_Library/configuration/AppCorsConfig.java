@@ -20,6 +20,8 @@ public class AppCorsConfig {
         // Allow all headers & expose Authorization for clients if needed
         config.addAllowedHeader("*");
         config.addExposedHeader("Authorization");
+        // Resumable uploads report where the next chunk starts
+        config.addExposedHeader("Upload-Offset");
         // Methods
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         // Cache pre-flight
@@ -0,0 +1,76 @@
+package com.example.E_Library.configuration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+
+/**
+ * HTTP transport for fetching book files into ZIP bundles. Kept apart from
+ * the Supabase pool: a bundle holds several response bodies open while it
+ * streams, with a much longer read timeout, and must not take the
+ * connections catalog and login calls need.
+ */
+@Configuration
+public class DownloadHttpClientConfig {
+
+    @Value("${app.download.http.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${app.download.http.max-connections-per-route:32}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${app.download.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.download.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${app.download.http.pool-acquire-timeout-ms:5000}")
+    private long poolAcquireTimeoutMs;
+
+    @Value("${app.download.http.idle-evict-seconds:30}")
+    private long idleEvictSeconds;
+
+    @Bean
+    public PoolingHttpClientConnectionManager downloadConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(idleEvictSeconds))
+                        .build())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "download").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient downloadHttpClient(PoolingHttpClientConnectionManager downloadConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(downloadConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .build();
+    }
+}
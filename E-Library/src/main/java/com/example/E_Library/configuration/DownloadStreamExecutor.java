@@ -0,0 +1,70 @@
+package com.example.E_Library.configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Threads that stream multi-book ZIPs to clients. A download holds its
+ * thread for as long as the client takes to read the archive, so these do
+ * not share Spring's applicationTaskExecutor with short async work, and they
+ * get their own async timeout instead of the container's default (30 s on
+ * Tomcat), which would cut long downloads off mid-archive.
+ *
+ * The pool and its queue are bounded; a download that finds both full is
+ * refused with a TaskRejectedException (503) rather than waiting behind the
+ * others. Not an Executor bean itself, so Boot still sets up its own
+ * applicationTaskExecutor.
+ */
+@Component
+public class DownloadStreamExecutor {
+
+    private final ThreadPoolExecutor pool;
+    private final AsyncTaskExecutor executor;
+    private final long timeoutMillis;
+
+    public DownloadStreamExecutor(@Value("${app.download.streams.threads:16}") int threads,
+                                  @Value("${app.download.streams.queue-capacity:16}") int queueCapacity,
+                                  @Value("${app.download.streams.timeout-minutes:60}") long timeoutMinutes,
+                                  WorkerThreads workerThreads,
+                                  MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("download.streams.rejected").register(meterRegistry);
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                workerThreads.platformThreads("zip-stream"),
+                (task, executor) -> {
+                    rejected.increment();
+                    new ThreadPoolExecutor.AbortPolicy().rejectedExecution(task, executor);
+                });
+        // Turns RejectedExecutionException into TaskRejectedException
+        this.executor = new TaskExecutorAdapter(pool);
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+
+        Gauge.builder("download.streams.queue.depth", pool, executor -> executor.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("download.streams.active", pool, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    // Runs body on this pool, with the download timeout, once the request has gone async
+    public <T> WebAsyncTask<T> task(Callable<T> body) {
+        return new WebAsyncTask<>(timeoutMillis, executor, body);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
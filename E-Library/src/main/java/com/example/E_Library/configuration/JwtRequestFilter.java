@@ -2,6 +2,7 @@ package com.example.E_Library.configuration;
 
 import java.io.IOException;
 import com.example.E_Library.exceptions.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,10 +10,11 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.example.E_Library.model.VerifiedToken;
 import com.example.E_Library.service.JwtService;
+import com.example.E_Library.service.TokenVersionService;
 import com.example.E_Library.utils.JwtUtil;
 
-import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,10 +25,16 @@ import jakarta.servlet.http.HttpServletResponse;
 public class JwtRequestFilter extends OncePerRequestFilter{
 	private final JwtService jwtService;
     private final JwtUtil jwtUtil;
+    private final TokenVersionService tokenVersionService;
 
-    public JwtRequestFilter(JwtService jwtService, JwtUtil jwtUtil) {
+    // Build the Authentication from verified claims instead of loading the user
+    @Value("${app.jwt.stateless:true}")
+    private boolean statelessAuthentication;
+
+    public JwtRequestFilter(JwtService jwtService, JwtUtil jwtUtil, TokenVersionService tokenVersionService) {
         this.jwtService = jwtService;
         this.jwtUtil = jwtUtil;
+        this.tokenVersionService = tokenVersionService;
     }
 
     @Override
@@ -34,14 +42,14 @@ public class JwtRequestFilter extends OncePerRequestFilter{
                                     FilterChain filterChain)
             throws ServletException, IOException {
         final String header = request.getHeader("Authorization");
-        String jwtToken = null;
-        String userName = null;
+        VerifiedToken verifiedToken = null;
 
         if (header != null && header.startsWith("Bearer ")) {
-            jwtToken = header.substring(7);
+            String jwtToken = header.substring(7);
 
             try {
-                userName = jwtUtil.getUserNameFromToken(jwtToken);
+                // Single parse + signature check; expiry is part of verification
+                verifiedToken = jwtUtil.verify(jwtToken);
             } catch (InvalidJwtException e) {
                 System.out.println("Unable to get the jwtToken");
             } catch (JwtTokenExpiredException e) {
@@ -49,10 +57,23 @@ public class JwtRequestFilter extends OncePerRequestFilter{
             }
         }
 
-        if (userName != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = jwtService.loadUserByUsername(userName);
+        if (verifiedToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String userName = verifiedToken.getSubject();
+            // Checked for every token, including ones issued without claims (version 0)
+            if (!tokenVersionService.isCurrent(userName, verifiedToken.getTokenVersion())) {
+                // Revoked token: leave the request unauthenticated
+                filterChain.doFilter(request, response);
+                return;
+            }
+            UserDetails userDetails = null;
+            if (statelessAuthentication) {
+                userDetails = verifiedToken.toAuthenticatedUser();
+            }
+            if (userDetails == null) {
+                userDetails = jwtService.loadUserByUsername(userName);
+            }
 
-            if (jwtUtil.validateToken(jwtToken, userDetails)) {
+            if (userName.equals(userDetails.getUsername())) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null,
                                 userDetails.getAuthorities());
@@ -0,0 +1,140 @@
+package com.example.E_Library.configuration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+
+/**
+ * Shared HTTP transport for every call to the Supabase REST API.
+ * One pooled keep-alive connection manager is used by all services so that
+ * TCP/TLS setup is paid once per connection instead of once per request.
+ * Request handlers use the non-blocking client, whose few I/O reactor
+ * threads serve every connection, so waiting on Supabase holds no thread.
+ */
+@Configuration
+public class SupabaseHttpClientConfig {
+
+    @Value("${supabase.http.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${supabase.http.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${supabase.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${supabase.http.read-timeout-ms:5000}")
+    private long readTimeoutMs;
+
+    @Value("${supabase.http.pool-acquire-timeout-ms:1000}")
+    private long poolAcquireTimeoutMs;
+
+    @Value("${supabase.http.idle-evict-seconds:30}")
+    private long idleEvictSeconds;
+
+    @Value("${supabase.http.connection-ttl-seconds:300}")
+    private long connectionTtlSeconds;
+
+    // Reactor threads for the non-blocking client; 0 = one per CPU
+    @Value("${supabase.http.io-threads:0}")
+    private int ioThreads;
+
+    @Bean
+    public PoolingHttpClientConnectionManager supabaseConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(connectionConfig())
+                .build();
+
+        // leased / pending / available / max gauges under httpcomponents.httpclient.pool.*
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "supabase").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient supabaseHttpClient(PoolingHttpClientConnectionManager supabaseConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(supabaseConnectionManager)
+                .setDefaultRequestConfig(requestConfig())
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                // SupabaseGuard retries (reads only, jittered); the client's own 503/429 retry would stack on it
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .build();
+    }
+
+    private ConnectionConfig connectionConfig() {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(idleEvictSeconds))
+                .build();
+    }
+
+    private RequestConfig requestConfig() {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+    }
+
+    @Bean
+    public PoolingAsyncClientConnectionManager supabaseAsyncConnectionManager(MeterRegistry meterRegistry) {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(connectionConfig())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "supabase-async").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpAsyncClient supabaseAsyncHttpClient(
+            PoolingAsyncClientConnectionManager supabaseAsyncConnectionManager) {
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(supabaseAsyncConnectionManager)
+                .setDefaultRequestConfig(requestConfig())
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .disableAutomaticRetries()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors())
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .build();
+        client.start();
+        return client;
+    }
+
+    @Bean
+    public RestTemplate supabaseRestTemplate(RestTemplateBuilder builder, CloseableHttpClient supabaseHttpClient) {
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(supabaseHttpClient))
+                .build();
+    }
+}
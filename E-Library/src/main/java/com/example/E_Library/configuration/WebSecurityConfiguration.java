@@ -17,6 +17,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 import com.example.E_Library.service.JwtService;
 
+import jakarta.servlet.DispatcherType;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
@@ -61,6 +63,8 @@ public class WebSecurityConfiguration {
             .csrf(csrf -> csrf.disable())
             .cors(cors -> {}) // CORS handled by CorsFilter bean
             .authorizeHttpRequests(auth -> auth
+                // Async endpoints resume on a second dispatch without the JWT filter; the first one was authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/users/register", "/users/login").permitAll()
                 .requestMatchers("/books", "/books/**").permitAll() // temporarily open
                 .requestMatchers("/uploads/**").permitAll()         // 👈 allow public access to files
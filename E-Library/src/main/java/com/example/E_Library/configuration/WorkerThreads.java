@@ -0,0 +1,28 @@
+package com.example.E_Library.configuration;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Threads for the application's own executors. These are small fixed-size
+ * pools whose thread count is the concurrency limit (BCrypt, file fetches,
+ * ZIP streams, bundle jobs), so they keep platform threads even in virtual-thread mode
+ * (spring.threads.virtual.enabled=true on Java 21+): pooling virtual threads
+ * would cap them at the same few and gain nothing. That mode covers Tomcat's
+ * request handling and Spring's applicationTaskExecutor instead.
+ */
+@Component
+public class WorkerThreads {
+
+    // Daemon platform threads named name-1, name-2, ...
+    public ThreadFactory platformThreads(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,23 +1,41 @@
 package com.example.E_Library.controller;
 
+import com.example.E_Library.configuration.DownloadStreamExecutor;
 import com.example.E_Library.model.Book;
+import com.example.E_Library.model.BookPage;
+import com.example.E_Library.model.BundleJobStatus;
+import com.example.E_Library.model.Suggestion;
+import com.example.E_Library.service.BookBundleService;
+import com.example.E_Library.service.BundleCache;
+import com.example.E_Library.service.BundleJobService;
+import com.example.E_Library.service.CatalogCache;
 import com.example.E_Library.service.SupabaseService;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.E_Library.service.UploadStore;
+import com.example.E_Library.utils.FileUrlRewriter;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletResponse;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.Principal;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,68 +49,84 @@ public class BookController {
     @Autowired
     private SupabaseService supabaseService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private BookBundleService bookBundleService;
+
+    @Autowired
+    private BundleCache bundleCache;
+
+    @Autowired
+    private BundleJobService bundleJobService;
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    @Autowired
+    private FileUrlRewriter fileUrlRewriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.books.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.books.max-page-size:200}")
+    private int maxPageSize;
 
+    @Autowired
+    private DownloadStreamExecutor downloadStreamExecutor;
+
+    // Supabase-backed endpoints return futures: the servlet thread is released while Supabase answers
     @GetMapping
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public String getAllBooks() throws Exception {
-        String jsonResponse = supabaseService.getAllBooks();
-
-        ArrayNode books = (ArrayNode) objectMapper.readTree(jsonResponse);
-
-        for (JsonNode book : books) {
-            if (book.has("file_url")) {
-                String fileUrl = book.get("file_url").asText();
-                // Only prepend localhost if the URL is not already complete
-                if (!fileUrl.startsWith("http://") && !fileUrl.startsWith("https://")) {
-                    ((ObjectNode) book).put("file_url", "http://localhost:8080" + fileUrl);
-                }
-            }
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getAllBooks(
+            @RequestParam(value = "cursor", required = false) Integer cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "count", defaultValue = "false") boolean count,
+            @RequestParam(value = "paged", defaultValue = "true") boolean paged) {
+        if (!paged) {
+            // Legacy shape: the whole table as one JSON array
+            return supabaseService.getAllBooks()
+                    .thenApply(books -> json(books.stale(), out -> fileUrlRewriter.writeBooks(books.value(), out)));
         }
-        logger.debug("Successfully processed {} books.", books.size());
-        return books.toString();
+
+        return supabaseService.getBooksPage(cursor, pageSize(limit), count)
+                .thenApply(page -> json(page.stale(), out -> fileUrlRewriter.writePage(page.value(), out)));
     }
 
     @GetMapping("/{book_id}")
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public String getBookById(@PathVariable Integer book_id) throws Exception {
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getBookById(@PathVariable Integer book_id) {
         logger.info("Request received to get book by ID: {}", book_id);
-        String jsonResponse = supabaseService.getBookById(book_id.toString());
-
-        ArrayNode books = (ArrayNode) objectMapper.readTree(jsonResponse);
-
-        if (books.size() > 0) {
-            ObjectNode book = (ObjectNode) books.get(0);
-            if (book.has("file_url")) {
-                String fileUrl = book.get("file_url").asText();
-                // Only prepend localhost if the URL is not already complete
-                if (!fileUrl.startsWith("http://") && !fileUrl.startsWith("https://")) {
-                    book.put("file_url", "http://localhost:8080" + fileUrl);
-                }
+        return supabaseService.getBookById(book_id.toString()).thenApply(entry -> {
+            Book book = entry.value();
+            if (book == null) {
+                logger.warn("No book found for ID: {}", book_id);
+            } else {
+                logger.debug("Book with ID {} found.", book_id);
             }
-            logger.debug("Book with ID {} found.", book_id);
-            return book.toString();
-        }
-        logger.warn("No book found for ID: {}", book_id);
-        return "{}";
+            return json(entry.stale(), out -> fileUrlRewriter.writeBook(book, out));
+        });
     }
 
-    private String savePdfToUploads(MultipartFile file) {
-        try {
-            // Get absolute path to project root
-            String projectRoot = new File(".").getCanonicalPath();
-            String uploadsDir = projectRoot + File.separator + "uploads";
-
-            File dir = new File(uploadsDir);
-            if (!dir.exists())
-                dir.mkdirs();
+    // Streams the body straight to the servlet output stream
+    private ResponseEntity<StreamingResponseBody> json(StreamingResponseBody body) {
+        return json(false, body);
+    }
 
-            String fileName = System.currentTimeMillis() + "_" + file.getOriginalFilename();
-            File dest = new File(dir, fileName);
-            file.transferTo(dest);
+    // A stale body is the last copy read before Supabase became unavailable
+    private ResponseEntity<StreamingResponseBody> json(boolean stale, StreamingResponseBody body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (stale) {
+            response.header(HttpHeaders.WARNING, CatalogCache.STALE_WARNING);
+        }
+        return response.body(body);
+    }
 
-            // Return relative path for Supabase
-            return "/uploads/" + fileName;
+    // Stored under its content hash; identical PDFs share one file
+    private UploadStore.StoredFile savePdfToUploads(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return uploadStore.store(in);
         } catch (IOException e) {
             throw new RuntimeException("Failed to store file: " + e.getMessage());
         }
@@ -100,16 +134,15 @@ public class BookController {
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("hasRole('ADMIN')")
-    public String addBook(
+    public CompletableFuture<String> addBook(
             @RequestPart("book") String bookJson,
             @RequestPart("pdf") MultipartFile pdfFile) {
             logger.info("Request received to add a new book.");
 
         // Convert JSON string to Book object
-        ObjectMapper mapper = new ObjectMapper();
         Book book;
         try {
-            book = mapper.readValue(bookJson, Book.class);
+            book = objectMapper.readValue(bookJson, Book.class);
             logger.debug("Book JSON parsed successfully for title: {}", book.getTitle());
         } catch (IOException e) {
             logger.error("Invalid book JSON received during add book request.", e);
@@ -117,16 +150,22 @@ public class BookController {
         }
 
         // Save file and set file_url
-        String filePath = savePdfToUploads(pdfFile);
-        book.setFile_url(filePath);
-        logger.info("PDF file saved to path: {}", filePath);
-
-        return supabaseService.addBook(book);
+        UploadStore.StoredFile stored = savePdfToUploads(pdfFile);
+        book.setFile_url(stored.url());
+        logger.info("PDF file saved to path: {} (already stored: {})", stored.url(), stored.deduplicated());
+
+        return supabaseService.addBookAsync(book).whenComplete((created, failure) -> {
+            uploadStore.release(stored);
+            // No row points at a freshly stored file now; a deduplicated one is still referenced and stays
+            if (failure != null) {
+                supabaseService.deleteUnreferencedFile(stored.url());
+            }
+        });
     }
 
     @PutMapping("/update/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public String updateBook(@PathVariable String id, @RequestBody Map<String, Object> updates) {
+    public CompletableFuture<String> updateBook(@PathVariable String id, @RequestBody Map<String, Object> updates) {
         logger.info("Request received to update book with ID: {}", id);
         // Supabase needs book_id in the body for PUT
         updates.put("book_id", Long.parseLong(id));
@@ -135,23 +174,82 @@ public class BookController {
 
     @DeleteMapping("/{book_id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public String deleteBook(@PathVariable Integer book_id) {
+    public CompletableFuture<String> deleteBook(@PathVariable Integer book_id) {
         logger.info("Request received to delete book with ID: {}", book_id);
         return supabaseService.deleteBook(book_id.toString());
     }
 
     @GetMapping("/search")
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public String searchBooks(@RequestParam("query") String query) {
+    public ResponseEntity<StreamingResponseBody> searchBooks(@RequestParam("query") String query,
+            @RequestParam(value = "fuzzy", defaultValue = "false") boolean fuzzy,
+            @RequestParam(value = "cursor", required = false) Integer cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "count", defaultValue = "false") boolean count,
+            @RequestParam(value = "paged", defaultValue = "true") boolean paged) {
+
+        logger.info("Request received to search books with query: '{}' (fuzzy={})", query, fuzzy);
+        // Ranked by the in-memory index; here cursor is the next_cursor offset from the previous page
+        if (!paged) {
+            List<Book> books = supabaseService.searchBooks(query, fuzzy);
+            // file_url is left as stored, as this endpoint always returned it
+            return json(out -> objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .writeValue(out, books));
+        }
+        BookPage page = supabaseService.searchBooksPage(query, fuzzy, cursor, pageSize(limit), count);
+        return json(out -> fileUrlRewriter.writePage(page, out));
+    }
+
+    @GetMapping("/suggest")
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    public List<Suggestion> suggest(@RequestParam("prefix") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return supabaseService.suggest(prefix, limit);
+    }
 
-        logger.info("Request received to search books with query: '{}'", query);
-        return supabaseService.searchBooks(query);
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return Math.min(limit, maxPageSize);
     }
 
-    @PostMapping("/download-multiple")
+    /**
+     * Streams books.zip from the bundle cache or as it is built; no Content-Length, so the response is chunked.
+     * The books are looked up first, without holding a thread, so a request where nothing can be downloaded
+     * still gets a 404. The archive is then written on the bounded download pool (503 when it is full), with
+     * its own timeout rather than the container's default, which would cut off any archive that takes longer
+     * than that to send.
+     */
+    @PostMapping(value = "/download-multiple", produces = "application/zip")
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public String downloadMultiple(@RequestBody List<String> bookIds) {
+    public CompletableFuture<WebAsyncTask<Void>> downloadMultiple(@RequestBody List<String> bookIds,
+            HttpServletResponse response) {
         logger.info("Request received to download multiple books. Count: {}", bookIds.size());
-        return supabaseService.downloadMultiple(bookIds);
+        return bookBundleService.prepareAsync(bookIds).thenApply(bundle -> downloadStreamExecutor.task(() -> {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.zip\"");
+            bundleCache.serve(bundle, response.getOutputStream());
+            return null;
+        }));
+    }
+
+    // Job mode for large selections: answers at once; progress and the archive are under /books/download-jobs
+    @PostMapping(value = "/download-multiple", params = "async=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    public CompletableFuture<ResponseEntity<BundleJobStatus>> downloadMultipleAsync(@RequestBody List<String> bookIds,
+            Principal principal) {
+        logger.info("Request received to prepare a download of multiple books. Count: {}", bookIds.size());
+        // Read here: the security context is not available where the lookup completes
+        String owner = principal.getName();
+        return bookBundleService.prepareAsync(bookIds).thenApply(bundle -> {
+            BundleJobStatus job = bundleJobService.submit(owner, bundle);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/books/download-jobs/" + job.getJob_id()))
+                    .body(job);
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package com.example.E_Library.controller;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.UploadStatus;
+import com.example.E_Library.service.ChunkedUploadService;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.annotation.CrossOrigin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.Principal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resumable book uploads, for PDFs larger than a multipart POST /books allows:
+ *
+ *   POST   /books/uploads?size=&sha256=   start; both parameters optional
+ *   PATCH  /books/uploads/{id}            raw chunk, Upload-Offset and optional
+ *                                         Upload-Checksum: sha256 <base64> headers
+ *   GET    /books/uploads/{id}            current offset, to resume after a failure
+ *   POST   /books/uploads/{id}/finalize   book JSON; adds the book like POST /books
+ *   DELETE /books/uploads/{id}            abandon
+ *
+ * A chunk at the wrong offset gets 409 with the current Upload-Offset.
+ */
+@RestController
+@RequestMapping("/books/uploads")
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
+public class BookUploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookUploadController.class);
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public BookUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UploadStatus> create(@RequestParam(value = "size", required = false) Long size,
+            @RequestParam(value = "sha256", required = false) String sha256,
+            Principal principal) throws IOException {
+        UploadStatus status = chunkedUploadService.create(principal.getName(), size, sha256);
+        return ResponseEntity.created(URI.create("/books/uploads/" + status.getUpload_id()))
+                .header(UPLOAD_OFFSET, String.valueOf(status.getOffset()))
+                .body(status);
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UploadStatus> status(@PathVariable String id, Principal principal) {
+        return withOffset(chunkedUploadService.status(principal.getName(), id));
+    }
+
+    // The body is read as it arrives and written straight to disk
+    @PatchMapping(value = "/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UploadStatus> append(@PathVariable String id,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            @RequestHeader(value = "Upload-Checksum", required = false) String checksum,
+            InputStream body,
+            Principal principal) throws IOException {
+        return withOffset(chunkedUploadService.append(principal.getName(), id, offset, checksum, body));
+    }
+
+    @PostMapping("/{id}/finalize")
+    @PreAuthorize("hasRole('ADMIN')")
+    public String complete(@PathVariable String id, @RequestBody Book book, Principal principal) throws IOException {
+        logger.info("Request received to finalize upload {} as book '{}'", id, book.getTitle());
+        return chunkedUploadService.complete(principal.getName(), id, book);
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> abort(@PathVariable String id, Principal principal) {
+        chunkedUploadService.abort(principal.getName(), id);
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+
+    private ResponseEntity<UploadStatus> withOffset(UploadStatus status) {
+        return ResponseEntity.ok().header(UPLOAD_OFFSET, String.valueOf(status.getOffset())).body(status);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.E_Library.controller;
+
+import com.example.E_Library.model.BundleJobStatus;
+import com.example.E_Library.service.BundleJobService;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jobs started by POST /books/download-multiple?async=true. GET polls a job;
+ * with ?wait=N it answers as soon as the job finishes or after N seconds,
+ * without holding a request thread in between. The archive is served from
+ * /file once the job is COMPLETED, with range support for resumed downloads.
+ */
+@RestController
+@RequestMapping("/books/download-jobs")
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
+public class BundleJobController {
+
+    private static final long MAX_WAIT_SECONDS = 60;
+
+    private final BundleJobService bundleJobService;
+
+    public BundleJobController(BundleJobService bundleJobService) {
+        this.bundleJobService = bundleJobService;
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    public DeferredResult<BundleJobStatus> status(@PathVariable String id,
+            @RequestParam(value = "wait", defaultValue = "0") long waitSeconds,
+            Principal principal) {
+        String owner = principal.getName();
+        BundleJobStatus current = bundleJobService.status(owner, id);
+        long wait = Math.min(Math.max(waitSeconds, 0), MAX_WAIT_SECONDS);
+        DeferredResult<BundleJobStatus> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(wait),
+                () -> bundleJobService.status(owner, id));
+        if (wait == 0) {
+            result.setResult(current);
+        } else {
+            bundleJobService.whenFinished(owner, id).thenAccept(result::setResult);
+        }
+        return result;
+    }
+
+    @GetMapping("/{id}/file")
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    public ResponseEntity<Resource> download(@PathVariable String id, Principal principal) {
+        Path archive = bundleJobService.artifact(principal.getName(), id);
+        if (archive == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.zip\"")
+                .body(new FileSystemResource(archive));
+    }
+
+    // Cancels a job that is still queued or running; a finished one is deleted with its archive
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    public BundleJobStatus cancel(@PathVariable String id, Principal principal) {
+        return bundleJobService.cancel(principal.getName(), id);
+    }
+}
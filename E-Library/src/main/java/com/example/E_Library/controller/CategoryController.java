@@ -1,8 +1,11 @@
 package com.example.E_Library.controller;
 
 import com.example.E_Library.model.BookCategory;
+import com.example.E_Library.service.CatalogCache;
 import com.example.E_Library.service.SupabaseService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -11,7 +14,9 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/categories")
@@ -25,15 +30,22 @@ public class CategoryController {
 
     @GetMapping
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public String getAllCategories() {
+    public CompletableFuture<ResponseEntity<List<BookCategory>>> getAllCategories() {
 
         logger.info("Request received to get all categories.");
-        return supabaseService.getAllCategories();
+        return supabaseService.getAllCategories().thenApply(categories -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (categories.stale()) {
+                // The last list read before Supabase became unavailable
+                response.header(HttpHeaders.WARNING, CatalogCache.STALE_WARNING);
+            }
+            return response.body(categories.value());
+        });
     }
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public String addCategory(@RequestBody BookCategory category) {
+    public CompletableFuture<String> addCategory(@RequestBody BookCategory category) {
 
         logger.info("Request received to add a new category with name: '{}'", category.getCategory_name());
         return supabaseService.addCategory(category);
@@ -41,14 +53,14 @@ public class CategoryController {
 
     @PutMapping("/update-category/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public String updateCategory(@PathVariable String id, @RequestBody Map<String, Object> updates) {
+    public CompletableFuture<String> updateCategory(@PathVariable String id, @RequestBody Map<String, Object> updates) {
         logger.info("Request received to update category with ID: {}", id);
         return supabaseService.updateCategory(id, updates);
     }
 
     @DeleteMapping("/{category_id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public String deleteCategory(@PathVariable Integer category_id) {
+    public CompletableFuture<String> deleteCategory(@PathVariable Integer category_id) {
         logger.info("Request received to delete category with ID: {}", category_id);
         return supabaseService.deleteCategory(category_id.toString());
     }
@@ -1,42 +1,171 @@
 package com.example.E_Library.controller;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.io.File;
-import java.net.MalformedURLException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.example.E_Library.service.UploadStore;
 
+/**
+ * Serves uploaded book files with the validators and byte ranges PDF viewers
+ * rely on: a strong ETag from the content hash plus Last-Modified for
+ * conditional GETs (304), and single or multipart ranges (206). Whole
+ * files and single ranges go out through Tomcat's sendfile when the
+ * connector supports it, so the bytes never pass through the JVM heap.
+ */
 @RestController
 @RequestMapping("/uploads")
 @CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
 public class FileController {
 
-    private final Path uploadDir = Paths.get(new File(".").getAbsolutePath(), "uploads");
+    // Tomcat request attributes (org.apache.catalina.Globals) for handing a file region to the connector
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Content-addressed names never change content, so clients may keep them for good
+    private static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue();
+    private static final String REVALIDATE = CacheControl.noCache().getHeaderValue();
+
+    private final UploadStore uploadStore;
+    private final long sendfileMinBytes;
 
-    @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) {
+    public FileController(UploadStore uploadStore,
+                          @Value("${app.uploads.sendfile-min-bytes:49152}") long sendfileMinBytes) {
+        this.uploadStore = uploadStore;
+        this.sendfileMinBytes = sendfileMinBytes;
+    }
+
+    // Content-addressed uploads live under two levels of shard directories (ab/cd/<sha256>.pdf)
+    @GetMapping({"/{filename:.+}", "/{shard:[0-9a-f]{2}}/{subshard:[0-9a-f]{2}}/{filename:.+}"})
+    public ResponseEntity<Resource> serveFile(@PathVariable(required = false) String shard,
+                                              @PathVariable(required = false) String subshard,
+                                              @PathVariable String filename,
+                                              HttpServletRequest request,
+                                              HttpServletResponse response) throws IOException {
+        Path file = uploadStore.resolve(shard == null ? filename : shard + "/" + subshard + "/" + filename);
+        if (file == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!Files.isRegularFile(file)) {
+            return ResponseEntity.notFound().build();
+        }
+        UploadStore.FileInfo info;
         try {
-            Path file = uploadDir.resolve(filename).normalize();
-            Resource resource = new UrlResource(file.toUri());
+            info = uploadStore.info(file);
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = "\"" + info.sha256() + "\"";
+
+        // Set before the check so 304s carry it too
+        response.setHeader(HttpHeaders.CACHE_CONTROL, uploadStore.isContentAddressed(file) ? IMMUTABLE : REVALIDATE);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, info.lastModified())) {
+            // The 304 status, ETag and Last-Modified are already on the response
+            return null;
+        }
 
-            if (!resource.exists()) {
-                return ResponseEntity.notFound().build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFileName() + "\"");
+        headers.setETag(etag);
+        headers.setLastModified(info.lastModified());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, info.lastModified())) {
+            range = null;
+        }
+        boolean sendfile = "GET".equals(request.getMethod())
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED));
+
+        if (range == null) {
+            headers.setContentLength(info.size());
+            if (sendfile && info.size() >= sendfileMinBytes) {
+                sendfile(request, file, 0, info.size());
+                return ResponseEntity.ok().headers(headers).build();
             }
+            // With a stale If-Range the Range header is still on the request; a stream body stops
+            // Spring from applying it
+            Resource body = request.getHeader(HttpHeaders.RANGE) == null
+                    ? new FileSystemResource(file)
+                    : new InputStreamResource(Files.newInputStream(file));
+            return ResponseEntity.ok().headers(headers).body(body);
+        }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "inline; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+        if (sendfile) {
+            long[] region = singleRange(range, info.size());
+            if (region != null && region[1] - region[0] >= sendfileMinBytes) {
+                headers.setContentLength(region[1] - region[0]);
+                headers.set(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + region[0] + "-" + (region[1] - 1) + "/" + info.size());
+                sendfile(request, file, region[0], region[1]);
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).build();
+            }
+        }
+        // Spring writes the 206 (multipart/byteranges for several ranges) or the 416
+        return ResponseEntity.ok().headers(headers).body(new FileSystemResource(file));
+    }
 
-        } catch (MalformedURLException e) {
-            return ResponseEntity.badRequest().build();
+    private static void sendfile(HttpServletRequest request, Path file, long start, long end) {
+        request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, end);
+    }
+
+    // [start, end) of a lone satisfiable range, or null to leave the request to Spring
+    private static long[] singleRange(String header, long size) {
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            if (ranges.size() != 1) {
+                return null;
+            }
+            HttpRange range = ranges.get(0);
+            return new long[] {range.getRangeStart(size), range.getRangeEnd(size) + 1};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // RFC 9110 13.1.5: an If-Range that no longer matches means "send me the whole file"
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date / 1000 == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
         }
     }
 }
@@ -0,0 +1,9 @@
+package com.example.E_Library.exceptions;
+
+// A Supabase call refused locally: its circuit is open or its bulkhead is full
+public class SupabaseUnavailableException extends ServiceBusyException {
+
+    public SupabaseUnavailableException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
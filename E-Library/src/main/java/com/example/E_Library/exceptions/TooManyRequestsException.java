@@ -0,0 +1,8 @@
+package com.example.E_Library.exceptions;
+
+// The caller is over a per-user limit; unlike ServiceBusyException the server itself is fine
+public class TooManyRequestsException extends RuntimeException {
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
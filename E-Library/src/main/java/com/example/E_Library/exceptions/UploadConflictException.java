@@ -0,0 +1,15 @@
+package com.example.E_Library.exceptions;
+
+// A chunk that does not continue the upload where it stands; the client resumes from currentOffset
+public class UploadConflictException extends RuntimeException {
+    private final long currentOffset;
+
+    public UploadConflictException(String message, long currentOffset) {
+        super(message);
+        this.currentOffset = currentOffset;
+    }
+
+    public long getCurrentOffset() {
+        return currentOffset;
+    }
+}
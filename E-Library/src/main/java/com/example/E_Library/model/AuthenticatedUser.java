@@ -0,0 +1,56 @@
+package com.example.E_Library.model;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Principal rebuilt from verified JWT claims, so authenticated requests do not
+ * need a Supabase lookup to know who the caller is.
+ */
+public class AuthenticatedUser implements UserDetails {
+
+	private final Integer userId;
+	private final String username;
+	private final boolean admin;
+	private final long tokenVersion;
+	private final List<GrantedAuthority> authorities;
+
+	public AuthenticatedUser(Integer userId, String username, boolean admin, long tokenVersion,
+			List<GrantedAuthority> authorities) {
+		this.userId = userId;
+		this.username = username;
+		this.admin = admin;
+		this.tokenVersion = tokenVersion;
+		this.authorities = List.copyOf(authorities);
+	}
+
+	public Integer getUserId() {
+		return userId;
+	}
+
+	public boolean isAdmin() {
+		return admin;
+	}
+
+	public long getTokenVersion() {
+		return tokenVersion;
+	}
+
+	@Override
+	public String getUsername() {
+		return username;
+	}
+
+	@Override
+	public String getPassword() {
+		return null;
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return authorities;
+	}
+}
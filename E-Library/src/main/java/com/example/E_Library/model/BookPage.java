@@ -0,0 +1,32 @@
+package com.example.E_Library.model;
+
+import java.util.List;
+
+/**
+ * One keyset page of books. nextCursor is the book_id to pass as ?cursor= for
+ * the following page, or null on the last page.
+ */
+public class BookPage {
+
+	private final List<Book> items;
+	private final Integer nextCursor;
+	private final Long total;
+
+	public BookPage(List<Book> items, Integer nextCursor, Long total) {
+		this.items = items;
+		this.nextCursor = nextCursor;
+		this.total = total;
+	}
+
+	public List<Book> getItems() {
+		return items;
+	}
+
+	public Integer getNextCursor() {
+		return nextCursor;
+	}
+
+	public Long getTotal() {
+		return total;
+	}
+}
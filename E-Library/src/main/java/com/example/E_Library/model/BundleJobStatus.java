@@ -0,0 +1,62 @@
+package com.example.E_Library.model;
+
+/**
+ * Where an asynchronous /books/download-multiple job stands. state is one of
+ * QUEUED, RUNNING, COMPLETED, FAILED or CANCELLED; download_url is set once
+ * the archive is ready and error once the job has failed.
+ */
+public class BundleJobStatus {
+
+	private final String job_id;
+	private final String state;
+	private final int files_done;
+	private final int files_total;
+	private final int files_failed;
+	private final long bytes_written;
+	private final String download_url;
+	private final String error;
+
+	public BundleJobStatus(String job_id, String state, int files_done, int files_total, int files_failed,
+			long bytes_written, String download_url, String error) {
+		this.job_id = job_id;
+		this.state = state;
+		this.files_done = files_done;
+		this.files_total = files_total;
+		this.files_failed = files_failed;
+		this.bytes_written = bytes_written;
+		this.download_url = download_url;
+		this.error = error;
+	}
+
+	public String getJob_id() {
+		return job_id;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public int getFiles_done() {
+		return files_done;
+	}
+
+	public int getFiles_total() {
+		return files_total;
+	}
+
+	public int getFiles_failed() {
+		return files_failed;
+	}
+
+	public long getBytes_written() {
+		return bytes_written;
+	}
+
+	public String getDownload_url() {
+		return download_url;
+	}
+
+	public String getError() {
+		return error;
+	}
+}
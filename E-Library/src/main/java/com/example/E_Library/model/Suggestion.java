@@ -0,0 +1,30 @@
+package com.example.E_Library.model;
+
+/**
+ * One /books/suggest completion. kind is "title" or "author"; book_id is set
+ * for titles only.
+ */
+public class Suggestion {
+
+	private final String text;
+	private final String kind;
+	private final Integer book_id;
+
+	public Suggestion(String text, String kind, Integer book_id) {
+		this.text = text;
+		this.kind = kind;
+		this.book_id = book_id;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public String getKind() {
+		return kind;
+	}
+
+	public Integer getBook_id() {
+		return book_id;
+	}
+}
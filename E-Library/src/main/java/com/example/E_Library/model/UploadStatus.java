@@ -0,0 +1,31 @@
+package com.example.E_Library.model;
+
+/**
+ * Where a resumable upload stands. offset is the number of bytes received so
+ * far, which is where the next chunk must start; size is the declared total,
+ * or null if the client did not declare one.
+ */
+public class UploadStatus {
+
+	private final String upload_id;
+	private final long offset;
+	private final Long size;
+
+	public UploadStatus(String upload_id, long offset, Long size) {
+		this.upload_id = upload_id;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	public String getUpload_id() {
+		return upload_id;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public Long getSize() {
+		return size;
+	}
+}
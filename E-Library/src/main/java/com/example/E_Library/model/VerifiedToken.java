@@ -0,0 +1,72 @@
+package com.example.E_Library.model;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Immutable result of parsing and signature-checking a JWT once.
+ */
+public final class VerifiedToken {
+
+	private final String subject;
+	private final Date expiration;
+	private final Integer userId;
+	private final boolean admin;
+	private final List<String> roles;
+	private final long tokenVersion;
+
+	public VerifiedToken(String subject, Date expiration, Integer userId, boolean admin, List<String> roles,
+			long tokenVersion) {
+		this.subject = subject;
+		this.expiration = new Date(expiration.getTime());
+		this.userId = userId;
+		this.admin = admin;
+		this.roles = roles == null ? null : List.copyOf(roles);
+		this.tokenVersion = tokenVersion;
+	}
+
+	public String getSubject() {
+		return subject;
+	}
+
+	public Date getExpiration() {
+		return new Date(expiration.getTime());
+	}
+
+	public boolean isExpired() {
+		return expiration.getTime() < System.currentTimeMillis();
+	}
+
+	public Integer getUserId() {
+		return userId;
+	}
+
+	public boolean isAdmin() {
+		return admin;
+	}
+
+	public List<String> getRoles() {
+		return roles;
+	}
+
+	public long getTokenVersion() {
+		return tokenVersion;
+	}
+
+	/**
+	 * Principal built from the claims alone, or null for tokens issued without
+	 * user_id/roles, which need a user lookup instead.
+	 */
+	public AuthenticatedUser toAuthenticatedUser() {
+		if (userId == null || roles == null) {
+			return null;
+		}
+		List<GrantedAuthority> authorities = roles.stream()
+				.map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role))
+				.toList();
+		return new AuthenticatedUser(userId, subject, admin, tokenVersion, authorities);
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.E_Library.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Repository;
+
+import com.example.E_Library.exceptions.SupabaseException;
+import com.example.E_Library.model.Book;
+
+/**
+ * Typed access to the Supabase "books" table. The *Async methods go through
+ * the non-blocking client and are what request handlers use.
+ */
+@Repository
+public class BookRepository {
+
+    private static final String TABLE = "books";
+
+    private final SupabaseRestClient client;
+    private final SupabaseAsyncClient asyncClient;
+
+    public BookRepository(SupabaseRestClient client, SupabaseAsyncClient asyncClient) {
+        this.client = client;
+        this.asyncClient = asyncClient;
+    }
+
+    public List<Book> findAll() {
+        return client.getList(TABLE, Book.class);
+    }
+
+    public CompletableFuture<List<Book>> findAllAsync() {
+        return asyncClient.getList(TABLE, Book.class);
+    }
+
+    public CompletableFuture<Optional<Book>> findByIdAsync(String id) {
+        return asyncClient.getList(TABLE + "?book_id=eq." + id, Book.class)
+                .thenApply(books -> books.stream().findFirst());
+    }
+
+    // Every book in ids with one request (book_id=in.(...)); unknown ids are simply absent
+    public CompletableFuture<List<Book>> findByIdsAsync(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        StringJoiner in = new StringJoiner(",", TABLE + "?book_id=in.(", ")");
+        for (Integer id : ids) {
+            in.add(id.toString());
+        }
+        return asyncClient.getList(in.toString(), Book.class);
+    }
+
+    /**
+     * Keyset page: rows with book_id greater than the cursor, in book_id order.
+     * filter is an optional extra PostgREST condition such as "or=(...)".
+     */
+    public CompletableFuture<List<Book>> findPageAsync(String filter, Integer cursor, int limit) {
+        StringBuilder query = new StringBuilder(TABLE).append("?order=book_id.asc&limit=").append(limit);
+        if (cursor != null) {
+            query.append("&book_id=gt.").append(cursor);
+        }
+        if (filter != null) {
+            query.append('&').append(filter);
+        }
+        return asyncClient.getList(query.toString(), Book.class);
+    }
+
+    // Offset page of filter matches in book_id order
+    public List<Book> findSlice(String filter, int offset, int limit) {
+        return client.getList(TABLE + "?order=book_id.asc&offset=" + offset + "&limit=" + limit + "&" + filter,
+                Book.class);
+    }
+
+    public List<Book> findMatching(String filter) {
+        return client.getList(TABLE + "?" + filter, Book.class);
+    }
+
+    // Exact row count from PostgREST's Content-Range ("0-0/1234") without transferring rows
+    public long count(String filter) {
+        return rowCount(client.head(countQuery(filter), countHeaders()));
+    }
+
+    public CompletableFuture<Long> countAsync(String filter) {
+        return asyncClient.head(countQuery(filter), countHeaders()).thenApply(BookRepository::rowCount);
+    }
+
+    private static String countQuery(String filter) {
+        return TABLE + "?select=book_id" + (filter != null ? "&" + filter : "");
+    }
+
+    private static HttpHeaders countHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Prefer", "count=exact");
+        headers.set("Range-Unit", "items");
+        headers.set("Range", "0-0");
+        return headers;
+    }
+
+    private static long rowCount(ResponseEntity<Void> response) {
+        String contentRange = response.getHeaders().getFirst("Content-Range");
+        if (contentRange == null || !contentRange.contains("/")) {
+            throw new SupabaseException("Supabase did not return a row count");
+        }
+        return Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1));
+    }
+
+    // Returns the stored row, including the generated book_id
+    public List<Book> insert(Map<String, Object> row) {
+        return client.sendForList(TABLE, HttpMethod.POST, row, Book.class);
+    }
+
+    public CompletableFuture<List<Book>> insertAsync(Map<String, Object> row) {
+        return asyncClient.sendForList(TABLE, HttpMethod.POST, row, Book.class);
+    }
+
+    public CompletableFuture<List<Book>> updateAsync(String id, Map<String, Object> updates) {
+        return asyncClient.sendForList(TABLE + "?book_id=eq." + id, HttpMethod.PUT, updates, Book.class);
+    }
+
+    public CompletableFuture<String> deleteAsync(String id) {
+        return asyncClient.send(TABLE + "?book_id=eq." + id, HttpMethod.DELETE, null);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.E_Library.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Repository;
+
+import com.example.E_Library.model.BookCategory;
+
+/**
+ * Typed access to the Supabase "book_categories" table, through the
+ * non-blocking client.
+ */
+@Repository
+public class CategoryRepository {
+
+    private static final String TABLE = "book_categories";
+
+    private final SupabaseAsyncClient client;
+
+    public CategoryRepository(SupabaseAsyncClient client) {
+        this.client = client;
+    }
+
+    public CompletableFuture<List<BookCategory>> findAllAsync() {
+        return client.getList(TABLE, BookCategory.class);
+    }
+
+    public CompletableFuture<String> insertAsync(Map<String, Object> row) {
+        return client.send(TABLE, HttpMethod.POST, row);
+    }
+
+    public CompletableFuture<String> updateAsync(String id, Map<String, Object> updates) {
+        return client.send(TABLE + "?category_id=eq." + id, HttpMethod.PUT, updates);
+    }
+
+    public CompletableFuture<String> deleteAsync(String id) {
+        return client.send(TABLE + "?category_id=eq." + id, HttpMethod.DELETE, null);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.E_Library.repository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker over the last windowSize calls. Once at least
+ * minimumCalls are recorded and the failure rate reaches the threshold the
+ * circuit opens and calls are refused; after openDuration a few trial calls
+ * are let through (half-open), and either all of them succeed and the
+ * circuit closes, or one fails and it opens again.
+ *
+ * The lock is held only for counter updates, never across a call.
+ */
+class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @FunctionalInterface
+    interface TransitionListener {
+        void onTransition(State from, State to);
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final TransitionListener listener;
+
+    // Ring buffer of outcomes, true = failure
+    private final boolean[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, long openMillis, int halfOpenCalls,
+                   TransitionListener listener) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenCalls = halfOpenCalls;
+        this.listener = listener;
+        this.window = new boolean[windowSize];
+    }
+
+    // Whether a call may go out now; every true must be followed by onSuccess or onFailure
+    boolean tryAcquire() {
+        State from;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                from = transition(State.HALF_OPEN);
+            } else {
+                from = null;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+        }
+        fire(from, State.HALF_OPEN);
+        return true;
+    }
+
+    void onSuccess() {
+        record(false);
+    }
+
+    void onFailure() {
+        record(true);
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    // Percentage of failures in the window, -1 until minimumCalls are recorded
+    synchronized float failureRate() {
+        return recorded < minimumCalls ? -1 : failures * 100f / recorded;
+    }
+
+    synchronized int bufferedCalls() {
+        return recorded;
+    }
+
+    // Seconds until an open circuit lets a trial call through (at least 1)
+    synchronized long retryAfterSeconds() {
+        long remaining = state == State.OPEN ? openNanos - (System.nanoTime() - openedAt) : 0;
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private void record(boolean failure) {
+        State from = null;
+        State to = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                if (failure) {
+                    from = transition(State.OPEN);
+                    to = State.OPEN;
+                } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                    from = transition(State.CLOSED);
+                    to = State.CLOSED;
+                }
+            } else if (state == State.CLOSED) {
+                if (recorded == windowSize && window[next]) {
+                    failures--;
+                }
+                window[next] = failure;
+                next = (next + 1) % windowSize;
+                recorded = Math.min(recorded + 1, windowSize);
+                if (failure) {
+                    failures++;
+                }
+                if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                    from = transition(State.OPEN);
+                    to = State.OPEN;
+                }
+            }
+            // Outcomes of calls that started before the circuit opened are dropped
+        }
+        fire(from, to);
+    }
+
+    // Caller holds the lock; returns the previous state
+    private State transition(State to) {
+        State from = state;
+        state = to;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (to == State.HALF_OPEN) {
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        } else {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+        return from;
+    }
+
+    // Listeners run outside the lock
+    private void fire(State from, State to) {
+        if (from != null && to != null) {
+            listener.onTransition(from, to);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.E_Library.repository;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.example.E_Library.utils.Futures;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coalesces identical concurrent Supabase reads: while a read is in flight,
+ * callers asking for the same thing (same endpoint, URL, extra headers and
+ * result type) wait for it instead of sending their own, and all get its
+ * result. Once it completes the next caller starts a fresh one, so nothing
+ * is cached here. Results are shared and must be treated as read-only.
+ *
+ * A write to an endpoint starts a new generation for it: reads begun
+ * before the write finished may return what was there before, so reads
+ * issued after it never join them.
+ *
+ * supabase.calls.coalesced{endpoint} counts the callers that joined a read
+ * already in flight.
+ */
+@Component
+public class SingleFlight {
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Identifies one read; headers are only those that vary per call (not the API key)
+    public String key(String pathAndQuery, Map<String, ?> headers, Class<?> type) {
+        String endpoint = SupabaseGuard.endpointOf(pathAndQuery);
+        return endpoint + '#' + generation(endpoint).get() + ' ' + pathAndQuery + ' ' + headers + ' ' + type.getName();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> runAsync(String key, Supplier<CompletableFuture<T>> read) {
+        CompletableFuture<T> flight = new CompletableFuture<>();
+        CompletableFuture<?> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced(key);
+            // A copy per caller, so one caller cancelling cannot fail the others
+            return ((CompletableFuture<T>) existing).copy();
+        }
+        try {
+            read.get().whenComplete((value, failure) -> land(key, flight, value, failure));
+        } catch (RuntimeException e) {
+            land(key, flight, null, e);
+        }
+        return flight.copy();
+    }
+
+    // The first caller reads on its own thread; the others block until it is done
+    @SuppressWarnings("unchecked")
+    public <T> T run(String key, Supplier<T> read) {
+        CompletableFuture<T> flight = new CompletableFuture<>();
+        CompletableFuture<?> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced(key);
+            try {
+                return (T) existing.join();
+            } catch (RuntimeException e) {
+                Throwable failure = Futures.unwrap(e);
+                throw failure instanceof RuntimeException ? (RuntimeException) failure : e;
+            }
+        }
+        T value;
+        try {
+            value = read.get();
+        } catch (RuntimeException | Error e) {
+            land(key, flight, null, e);
+            throw e;
+        }
+        land(key, flight, value, null);
+        return value;
+    }
+
+    // Call once a write to the endpoint has finished, whatever its outcome
+    public void writeCompleted(String pathAndQuery) {
+        generation(SupabaseGuard.endpointOf(pathAndQuery)).incrementAndGet();
+    }
+
+    // Removed before completing, so a caller arriving after the result starts a new read
+    private <T> void land(String key, CompletableFuture<T> flight, T value, Throwable failure) {
+        inFlight.remove(key, flight);
+        if (failure != null) {
+            flight.completeExceptionally(Futures.unwrap(failure));
+        } else {
+            flight.complete(value);
+        }
+    }
+
+    private void coalesced(String key) {
+        meterRegistry.counter("supabase.calls.coalesced", "endpoint", key.substring(0, key.indexOf('#'))).increment();
+    }
+
+    private AtomicLong generation(String endpoint) {
+        return generations.computeIfAbsent(endpoint, e -> new AtomicLong());
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.E_Library.repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Non-blocking counterpart of {@link SupabaseRestClient}: the same requests,
+ * returning futures that the HTTP client's I/O reactor completes, so no
+ * thread waits while Supabase answers. Failures are the exceptions
+ * RestTemplate throws (HttpClientErrorException for 4xx,
+ * HttpServerErrorException for 5xx, ResourceAccessException for I/O
+ * errors), so callers map them the same way on either path. Every call
+ * goes through {@link SupabaseGuard} and reads through {@link SingleFlight},
+ * as on the blocking client.
+ *
+ * Response bodies are buffered before decoding, and continuations run on
+ * the reactor threads unless the caller moves them; keep those short.
+ */
+@Component
+public class SupabaseAsyncClient {
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final SupabaseRestClient restClient;
+    private final ObjectMapper objectMapper;
+    private final SupabaseGuard guard;
+    private final SingleFlight singleFlight;
+
+    public SupabaseAsyncClient(CloseableHttpAsyncClient supabaseAsyncHttpClient,
+                               SupabaseRestClient restClient,
+                               ObjectMapper objectMapper,
+                               SupabaseGuard guard,
+                               SingleFlight singleFlight) {
+        this.httpClient = supabaseAsyncHttpClient;
+        this.restClient = restClient;
+        this.objectMapper = objectMapper;
+        this.guard = guard;
+        this.singleFlight = singleFlight;
+    }
+
+    public <T> CompletableFuture<List<T>> getList(String pathAndQuery, Class<T> type) {
+        ObjectReader reader = restClient.listReader(type);
+        return singleFlight.runAsync(singleFlight.key(pathAndQuery, Map.of(), type),
+                () -> guard.callAsync(HttpMethod.GET, pathAndQuery,
+                        () -> execute(HttpMethod.GET, pathAndQuery, restClient.headers(), null)
+                                .thenApply(response -> decode(reader, response))));
+    }
+
+    public CompletableFuture<ResponseEntity<Void>> head(String pathAndQuery, HttpHeaders extraHeaders) {
+        HttpHeaders headers = restClient.headers();
+        headers.putAll(extraHeaders);
+        return singleFlight.runAsync(singleFlight.key(pathAndQuery, extraHeaders, Void.class),
+                () -> guard.callAsync(HttpMethod.HEAD, pathAndQuery, () -> execute(HttpMethod.HEAD, pathAndQuery, headers, null)
+                        .thenApply(response -> new ResponseEntity<>(headersOf(response),
+                                HttpStatusCode.valueOf(response.getCode())))));
+    }
+
+    // Writes (POST/PUT/PATCH/DELETE); completes with PostgREST's response body, null when empty
+    public CompletableFuture<String> send(String pathAndQuery, HttpMethod method, Object body) {
+        return guard.callAsync(method, pathAndQuery, () -> execute(method, pathAndQuery, restClient.headers(), body)
+                .thenApply(response -> response.getBodyBytes() == null || response.getBodyBytes().length == 0
+                        ? null : new String(response.getBodyBytes(), StandardCharsets.UTF_8)))
+                .whenComplete((response, failure) -> singleFlight.writeCompleted(pathAndQuery));
+    }
+
+    // Writes that ask PostgREST to return the affected rows (Prefer: return=representation)
+    public <T> CompletableFuture<List<T>> sendForList(String pathAndQuery, HttpMethod method, Object body, Class<T> type) {
+        ObjectReader reader = restClient.listReader(type);
+        HttpHeaders headers = restClient.headers();
+        headers.set("Prefer", "return=representation");
+        CompletableFuture<List<T>> rows = guard.callAsync(method, pathAndQuery,
+                () -> execute(method, pathAndQuery, headers, body).thenApply(response -> decode(reader, response)));
+        return rows.whenComplete((written, failure) -> singleFlight.writeCompleted(pathAndQuery));
+    }
+
+    private CompletableFuture<SimpleHttpResponse> execute(HttpMethod method, String pathAndQuery,
+                                                          HttpHeaders headers, Object body) {
+        String url = restClient.url(pathAndQuery);
+        SimpleRequestBuilder builder = SimpleRequestBuilder.create(method.name()).setUri(url);
+        headers.forEach((name, values) -> {
+            // The body's content type goes with the body
+            if (!HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+                values.forEach(value -> builder.addHeader(name, value));
+            }
+        });
+        if (body != null) {
+            try {
+                builder.setBody(objectMapper.writeValueAsBytes(body), ContentType.APPLICATION_JSON);
+            } catch (JsonProcessingException e) {
+                return CompletableFuture.failedFuture(new RestClientException("Could not write request body", e));
+            }
+        }
+        SimpleHttpRequest request = builder.build();
+
+        CompletableFuture<SimpleHttpResponse> result = new CompletableFuture<>();
+        httpClient.execute(request, new FutureCallback<>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                RuntimeException error = errorFor(response);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.completeExceptionally(e instanceof IOException
+                        ? new ResourceAccessException("I/O error on " + method + " request for \"" + url + "\": "
+                                + e.getMessage(), (IOException) e)
+                        : e);
+            }
+
+            @Override
+            public void cancelled() {
+                result.completeExceptionally(new CancellationException(method + " " + url + " was cancelled"));
+            }
+        });
+        return result;
+    }
+
+    // What RestTemplate's default error handler would have thrown for this response
+    private static RuntimeException errorFor(SimpleHttpResponse response) {
+        HttpStatusCode status = HttpStatusCode.valueOf(response.getCode());
+        if (!status.isError()) {
+            return null;
+        }
+        byte[] body = response.getBodyBytes() != null ? response.getBodyBytes() : new byte[0];
+        String statusText = response.getReasonPhrase() != null ? response.getReasonPhrase() : "";
+        if (status.is4xxClientError()) {
+            return HttpClientErrorException.create(status, statusText, headersOf(response), body, StandardCharsets.UTF_8);
+        }
+        return HttpServerErrorException.create(status, statusText, headersOf(response), body, StandardCharsets.UTF_8);
+    }
+
+    private static HttpHeaders headersOf(SimpleHttpResponse response) {
+        HttpHeaders headers = new HttpHeaders();
+        for (Header header : response.getHeaders()) {
+            headers.add(header.getName(), header.getValue());
+        }
+        return headers;
+    }
+
+    private static <T> List<T> decode(ObjectReader reader, SimpleHttpResponse response) {
+        try {
+            return reader.readValue(response.getBodyBytes());
+        } catch (IOException e) {
+            throw new RestClientException("Could not read Supabase response", e);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.E_Library.repository;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.E_Library.exceptions.SupabaseUnavailableException;
+import com.example.E_Library.utils.Futures;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Resilience around Supabase, one set per endpoint (the table a call goes
+ * to: users, books, book_categories):
+ *  - a circuit breaker that stops calling an endpoint that keeps failing
+ *    (5xx, I/O errors, timeouts; 4xx answers count as successes), so
+ *    callers fail at once instead of each waiting out the timeout;
+ *  - a bulkhead capping concurrent calls, so one slow endpoint cannot take
+ *    every connection and request thread;
+ *  - retries with full-jitter backoff for reads (GET, HEAD) only; writes are
+ *    not idempotent and are never repeated.
+ * Refused calls fail with SupabaseUnavailableException (503 with Retry-After).
+ *
+ * Metrics, tagged endpoint: supabase.circuit.state{state} (1 for the current
+ * state), supabase.circuit.transitions{from,to}, supabase.calls.rejected{reason},
+ * supabase.calls.retried, supabase.bulkhead.in-flight. Current state is also
+ * on /actuator/supabase.
+ */
+@Component
+public class SupabaseGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(SupabaseGuard.class);
+
+    /**
+     * Breaker and bulkhead of one endpoint. A call takes a bulkhead permit
+     * for its whole duration, retries included, and asks the breaker before
+     * each attempt.
+     */
+    final class Endpoint {
+        final String name;
+        final CircuitBreaker breaker;
+        final Semaphore bulkhead = new Semaphore(maxConcurrentCalls);
+        private final Counter circuitOpenRejections;
+        private final Counter bulkheadRejections;
+        private final Counter retries;
+
+        Endpoint(String name) {
+            this.name = name;
+            this.breaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openMillis, halfOpenCalls,
+                    (from, to) -> {
+                        logger.warn("Supabase circuit for {} went from {} to {}", name, from, to);
+                        meterRegistry.counter("supabase.circuit.transitions", "endpoint", name,
+                                "from", from.name(), "to", to.name()).increment();
+                    });
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                Gauge.builder("supabase.circuit.state", breaker, b -> b.state() == state ? 1 : 0)
+                        .tags("endpoint", name, "state", state.name())
+                        .register(meterRegistry);
+            }
+            Gauge.builder("supabase.bulkhead.in-flight", bulkhead, b -> maxConcurrentCalls - b.availablePermits())
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+            this.circuitOpenRejections = meterRegistry.counter("supabase.calls.rejected", "endpoint", name,
+                    "reason", "circuit-open");
+            this.bulkheadRejections = meterRegistry.counter("supabase.calls.rejected", "endpoint", name,
+                    "reason", "bulkhead-full");
+            this.retries = meterRegistry.counter("supabase.calls.retried", "endpoint", name);
+        }
+
+        int inFlight() {
+            return maxConcurrentCalls - bulkhead.availablePermits();
+        }
+
+        private void enter() {
+            if (!bulkhead.tryAcquire()) {
+                bulkheadRejections.increment();
+                throw new SupabaseUnavailableException("Too many concurrent Supabase calls to " + name, 1);
+            }
+        }
+
+        private void checkCircuit() {
+            if (!breaker.tryAcquire()) {
+                circuitOpenRejections.increment();
+                throw new SupabaseUnavailableException("Supabase " + name + " is unavailable",
+                        breaker.retryAfterSeconds());
+            }
+        }
+
+        private void record(Throwable failure) {
+            if (failure != null && isUnavailable(failure)) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+    private final int maxConcurrentCalls;
+    private final int maxAttempts;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+
+    public SupabaseGuard(@Value("${app.supabase.circuit.window-size:20}") int windowSize,
+                         @Value("${app.supabase.circuit.minimum-calls:10}") int minimumCalls,
+                         @Value("${app.supabase.circuit.failure-rate-percent:50}") int failureRateThreshold,
+                         @Value("${app.supabase.circuit.open-seconds:30}") long openSeconds,
+                         @Value("${app.supabase.circuit.half-open-calls:3}") int halfOpenCalls,
+                         @Value("${app.supabase.bulkhead.max-concurrent-calls:50}") int maxConcurrentCalls,
+                         @Value("${app.supabase.retry.max-attempts:3}") int maxAttempts,
+                         @Value("${app.supabase.retry.base-delay-ms:100}") long retryBaseMillis,
+                         @Value("${app.supabase.retry.max-delay-ms:1000}") long retryMaxMillis,
+                         MeterRegistry meterRegistry) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = TimeUnit.SECONDS.toMillis(openSeconds);
+        this.halfOpenCalls = halfOpenCalls;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBaseMillis = retryBaseMillis;
+        this.retryMaxMillis = retryMaxMillis;
+        this.meterRegistry = meterRegistry;
+        // Known up front so their metrics exist before the first call
+        for (String name : new String[] {"users", "books", "book_categories"}) {
+            endpoint(name);
+        }
+    }
+
+    /**
+     * Whether a failure means Supabase could not serve the call (5xx, I/O
+     * error or timeout, or a call refused here) rather than an answer such
+     * as 404 or 409. Only these open circuits, are retried, or fall back to
+     * stale data.
+     */
+    public static boolean isUnavailable(Throwable failure) {
+        Throwable cause = Futures.unwrap(failure);
+        return cause instanceof HttpServerErrorException
+                || cause instanceof ResourceAccessException
+                || cause instanceof SupabaseUnavailableException;
+    }
+
+    // Blocking calls; retries sleep on the calling thread
+    public <T> T call(HttpMethod method, String pathAndQuery, Supplier<T> call) {
+        Endpoint endpoint = endpoint(endpointOf(pathAndQuery));
+        endpoint.enter();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                endpoint.checkCircuit();
+                try {
+                    T result = call.get();
+                    endpoint.record(null);
+                    return result;
+                } catch (RuntimeException e) {
+                    endpoint.record(e);
+                    if (!retryable(method, e, attempt)) {
+                        throw e;
+                    }
+                }
+                endpoint.retries.increment();
+                try {
+                    Thread.sleep(backoffMillis(attempt));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ResourceAccessException("Interrupted while retrying Supabase " + endpoint.name);
+                }
+            }
+        } finally {
+            endpoint.bulkhead.release();
+        }
+    }
+
+    // Non-blocking calls; a retry is scheduled rather than waited for
+    public <T> CompletableFuture<T> callAsync(HttpMethod method, String pathAndQuery,
+                                              Supplier<CompletableFuture<T>> call) {
+        Endpoint endpoint = endpoint(endpointOf(pathAndQuery));
+        try {
+            endpoint.enter();
+        } catch (SupabaseUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(endpoint, method, call, 1, result);
+        return result.whenComplete((value, failure) -> endpoint.bulkhead.release());
+    }
+
+    private <T> void attempt(Endpoint endpoint, HttpMethod method, Supplier<CompletableFuture<T>> call, int attempt,
+                             CompletableFuture<T> result) {
+        CompletableFuture<T> response;
+        try {
+            endpoint.checkCircuit();
+            response = call.get();
+        } catch (SupabaseUnavailableException e) {
+            result.completeExceptionally(e);
+            return;
+        } catch (RuntimeException e) {
+            endpoint.record(e);
+            result.completeExceptionally(e);
+            return;
+        }
+        response.whenComplete((value, failure) -> {
+            endpoint.record(failure);
+            if (failure == null) {
+                result.complete(value);
+            } else if (retryable(method, failure, attempt)) {
+                endpoint.retries.increment();
+                CompletableFuture.delayedExecutor(backoffMillis(attempt), TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt(endpoint, method, call, attempt + 1, result));
+            } else {
+                result.completeExceptionally(Futures.unwrap(failure));
+            }
+        });
+    }
+
+    // Reads only, and only failures another attempt might not hit; a refusal here is final
+    private boolean retryable(HttpMethod method, Throwable failure, int attempt) {
+        return attempt < maxAttempts
+                && (method == HttpMethod.GET || method == HttpMethod.HEAD)
+                && isUnavailable(failure)
+                && !(Futures.unwrap(failure) instanceof SupabaseUnavailableException);
+    }
+
+    // Full jitter: uniform in [0, min(max, base * 2^(attempt-1))]
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(retryMaxMillis, retryBaseMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    // "books?book_id=eq.1" -> "books"
+    static String endpointOf(String pathAndQuery) {
+        int end = pathAndQuery.length();
+        for (int i = 0; i < pathAndQuery.length(); i++) {
+            char c = pathAndQuery.charAt(i);
+            if (c == '?' || c == '/') {
+                end = i;
+                break;
+            }
+        }
+        return pathAndQuery.substring(0, end);
+    }
+
+    Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, Endpoint::new);
+    }
+
+    Map<String, Endpoint> endpoints() {
+        return endpoints;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.E_Library.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * /actuator/supabase: circuit state, failure rate and bulkhead use of each
+ * Supabase endpoint, for a quick look without querying metrics one by one.
+ */
+@Component
+@Endpoint(id = "supabase")
+public class SupabaseGuardEndpoint {
+
+    private final SupabaseGuard guard;
+
+    public SupabaseGuardEndpoint(SupabaseGuard guard) {
+        this.guard = guard;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> endpoints() {
+        Map<String, Map<String, Object>> endpoints = new TreeMap<>();
+        guard.endpoints().forEach((name, endpoint) -> {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("state", endpoint.breaker.state());
+            details.put("failureRatePercent", endpoint.breaker.failureRate());
+            details.put("bufferedCalls", endpoint.breaker.bufferedCalls());
+            details.put("inFlight", endpoint.inFlight());
+            endpoints.put(name, details);
+        });
+        return endpoints;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.E_Library.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Low-level access to the Supabase PostgREST API. Responses are decoded
+ * straight from the connection stream into model types with ObjectReaders
+ * that are built once per type from the application's shared ObjectMapper.
+ * Every call goes through {@link SupabaseGuard}; identical concurrent reads
+ * share one call through {@link SingleFlight}.
+ */
+@Component
+public class SupabaseRestClient {
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final SupabaseGuard guard;
+    private final SingleFlight singleFlight;
+    private final Map<Class<?>, ObjectReader> listReaders = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    @Value("${PROJECT_URL}")
+    private String projectUrl;
+
+    @Value("${SECRET_KEY}")
+    private String secretKey;
+
+    public SupabaseRestClient(RestTemplate supabaseRestTemplate, ObjectMapper objectMapper, SupabaseGuard guard,
+                              SingleFlight singleFlight) {
+        this.restTemplate = supabaseRestTemplate;
+        this.objectMapper = objectMapper;
+        this.guard = guard;
+        this.singleFlight = singleFlight;
+    }
+
+    public HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("apikey", secretKey);
+        headers.set("Authorization", "Bearer " + secretKey);
+        return headers;
+    }
+
+    // "books?book_id=eq.1" -> https://<project>/rest/v1/books?book_id=eq.1
+    public String url(String pathAndQuery) {
+        return projectUrl + "/rest/v1/" + pathAndQuery;
+    }
+
+    public <T> List<T> getList(String pathAndQuery, Class<T> type) {
+        ObjectReader reader = listReader(type);
+        return singleFlight.run(singleFlight.key(pathAndQuery, Map.of(), type),
+                () -> guard.call(HttpMethod.GET, pathAndQuery, () -> restTemplate.execute(url(pathAndQuery), HttpMethod.GET,
+                        request -> request.getHeaders().putAll(headers()),
+                        response -> reader.readValue(response.getBody()))));
+    }
+
+    public ResponseEntity<Void> head(String pathAndQuery, HttpHeaders extraHeaders) {
+        HttpHeaders headers = headers();
+        headers.putAll(extraHeaders);
+        return singleFlight.run(singleFlight.key(pathAndQuery, extraHeaders, Void.class),
+                () -> guard.call(HttpMethod.HEAD, pathAndQuery,
+                        () -> restTemplate.exchange(url(pathAndQuery), HttpMethod.HEAD, new HttpEntity<>(headers), Void.class)));
+    }
+
+    // Writes (POST/PUT/PATCH/DELETE); returns PostgREST's response body, usually empty
+    public String send(String pathAndQuery, HttpMethod method, Object body) {
+        HttpEntity<Object> entity = new HttpEntity<>(body, headers());
+        try {
+            return guard.call(method, pathAndQuery,
+                    () -> restTemplate.exchange(url(pathAndQuery), method, entity, String.class).getBody());
+        } finally {
+            singleFlight.writeCompleted(pathAndQuery);
+        }
+    }
+
+    // Writes that ask PostgREST to return the affected rows (Prefer: return=representation)
+    public <T> List<T> sendForList(String pathAndQuery, HttpMethod method, Object body, Class<T> type) {
+        ObjectReader reader = listReader(type);
+        HttpHeaders headers = headers();
+        headers.set("Prefer", "return=representation");
+        try {
+            return guard.call(method, pathAndQuery, () -> restTemplate.execute(url(pathAndQuery), method,
+                    request -> {
+                        request.getHeaders().putAll(headers);
+                        objectMapper.writeValue(request.getBody(), body);
+                    },
+                    response -> reader.readValue(response.getBody())));
+        } finally {
+            singleFlight.writeCompleted(pathAndQuery);
+        }
+    }
+
+    public ObjectReader listReader(Class<?> type) {
+        return listReaders.computeIfAbsent(type,
+                t -> objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, t)));
+    }
+
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, objectMapper::writerFor);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.E_Library.repository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Repository;
+
+import com.example.E_Library.model.User;
+
+/**
+ * Typed access to the Supabase "users" table. Login, registration and
+ * credential changes use the *Async methods; token checks and background
+ * rehashing stay blocking.
+ */
+@Repository
+public class UserRepository {
+
+    private static final String TABLE = "users";
+
+    private final SupabaseRestClient client;
+    private final SupabaseAsyncClient asyncClient;
+
+    public UserRepository(SupabaseRestClient client, SupabaseAsyncClient asyncClient) {
+        this.client = client;
+        this.asyncClient = asyncClient;
+    }
+
+    public Optional<User> findByUsername(String username) {
+        return client.getList(TABLE + "?username=eq." + username, User.class).stream().findFirst();
+    }
+
+    public CompletableFuture<Optional<User>> findByUsernameAsync(String username) {
+        return asyncClient.getList(TABLE + "?username=eq." + username, User.class)
+                .thenApply(users -> users.stream().findFirst());
+    }
+
+    public Optional<User> findByEmail(String email) {
+        return client.getList(TABLE + "?email=eq." + email, User.class).stream().findFirst();
+    }
+
+    public CompletableFuture<Optional<User>> findByEmailAsync(String email) {
+        return asyncClient.getList(TABLE + "?email=eq." + email, User.class)
+                .thenApply(users -> users.stream().findFirst());
+    }
+
+    public String insert(Map<String, Object> row) {
+        return client.send(TABLE, HttpMethod.POST, row);
+    }
+
+    public CompletableFuture<String> insertAsync(Map<String, Object> row) {
+        return asyncClient.send(TABLE, HttpMethod.POST, row);
+    }
+
+    public String updatePassword(Integer userId, String encodedPassword) {
+        return client.send(TABLE + "?user_id=eq." + userId, HttpMethod.PATCH, Map.of("password", encodedPassword));
+    }
+
+    public CompletableFuture<String> updatePasswordAsync(Integer userId, String encodedPassword) {
+        return asyncClient.send(TABLE + "?user_id=eq." + userId, HttpMethod.PATCH, Map.of("password", encodedPassword));
+    }
+
+    public CompletableFuture<String> updateAdminAsync(Integer userId, boolean admin) {
+        return asyncClient.send(TABLE + "?user_id=eq." + userId, HttpMethod.PATCH, Map.of("is_admin", admin));
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.E_Library.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.exceptions.ResourceNotFoundException;
+import com.example.E_Library.model.Book;
+import com.example.E_Library.repository.BookRepository;
+
+/**
+ * Builds multi-book ZIP downloads straight into an output stream, normally
+ * the HTTP response, so nothing is staged on disk and a slow client slows
+ * the build down rather than filling memory.
+ */
+@Service
+public class BookBundleService {
+    private static final Logger logger = LoggerFactory.getLogger(BookBundleService.class);
+
+    static final String FAILURES_ENTRY = "failed.txt";
+
+    /** A book that could not be put in the archive, and why. */
+    public record Failure(String bookId, String reason) {
+    }
+
+    /** Books resolved for one download, in book_id order, plus the ids already known to be missing. */
+    public record Bundle(List<Book> books, List<Failure> failed) {
+    }
+
+    /**
+     * Told after each book has gone into the archive (or failed to). May
+     * throw to stop the build, e.g. when a background job is cancelled.
+     */
+    @FunctionalInterface
+    public interface Progress {
+        Progress NONE = (done, failed, total) -> {
+        };
+
+        // failed counts books among the done ones that could not be fetched
+        void entryWritten(int done, int failed, int total);
+
+        // Asked between reads of a file, so a cancelled build stops inside a large book too
+        default boolean cancelled() {
+            return false;
+        }
+    }
+
+    private final BookRepository bookRepository;
+    private final BookFileFetcher bookFileFetcher;
+    private final SuggestionIndex suggestionIndex;
+
+    public BookBundleService(BookRepository bookRepository, BookFileFetcher bookFileFetcher,
+                             SuggestionIndex suggestionIndex) {
+        this.bookRepository = bookRepository;
+        this.bookFileFetcher = bookFileFetcher;
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    /**
+     * Looks up every requested book with one book_id=in.(...) query, on the
+     * non-blocking client. Called before the response is committed, so a
+     * request where nothing can be downloaded still gets a 404. Books and
+     * failures come back sorted, so the same set of ids always produces the
+     * same archive whatever the request order (BundleCache relies on this).
+     */
+    public CompletableFuture<Bundle> prepareAsync(List<String> bookIds) {
+        Map<String, Integer> requested = new LinkedHashMap<>();
+        List<Failure> failed = new ArrayList<>();
+        for (String bookId : bookIds) {
+            try {
+                requested.putIfAbsent(bookId, Integer.valueOf(bookId.trim()));
+            } catch (NumberFormatException | NullPointerException e) {
+                failed.add(new Failure(bookId, "Invalid book ID"));
+            }
+        }
+        return bookRepository.findByIdsAsync(requested.values()).thenApply(rows -> {
+            Map<Integer, Book> found = new HashMap<>();
+            for (Book book : rows) {
+                found.put(book.getBook_id(), book);
+            }
+            List<Book> books = new ArrayList<>();
+            for (Map.Entry<String, Integer> id : requested.entrySet()) {
+                Book book = found.get(id.getValue());
+                if (book == null || book.getFile_url() == null) {
+                    failed.add(new Failure(id.getKey(), book == null ? "Book not found" : "Book has no file"));
+                } else {
+                    books.add(book);
+                }
+            }
+            if (books.isEmpty()) {
+                throw new ResourceNotFoundException("None of the requested books could be downloaded");
+            }
+            books.sort(Comparator.comparing(Book::getBook_id));
+            failed.sort(Comparator.comparing(Failure::bookId));
+            return new Bundle(books, failed);
+        });
+    }
+
+    /**
+     * Streams the bundle as a ZIP. Entries follow bundle order while the
+     * next few files are opened in the background. PDFs are already
+     * compressed, so they are written at deflate level 0 instead of being
+     * compressed again. Books that fail are listed in a trailing failed.txt.
+     * Returns false if any file could not be fetched, i.e. the archive is
+     * not what the same request would produce next time. Throws
+     * CancellationException as soon as progress reports the build cancelled.
+     */
+    public boolean write(Bundle bundle, OutputStream out) throws IOException {
+        return write(bundle, out, Progress.NONE);
+    }
+
+    public boolean write(Bundle bundle, OutputStream out, Progress progress) throws IOException {
+        List<Book> books = bundle.books();
+        List<Failure> failed = new ArrayList<>(bundle.failed());
+        Deque<CompletableFuture<InputStream>> pending = new ArrayDeque<>();
+        int next = 0;
+        int done = 0;
+        int fetchFailures = 0;
+        try {
+            ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(out, BookFileFetcher.BUFFER_SIZE));
+            Set<String> entryNames = new HashSet<>();
+            byte[] buffer = new byte[BookFileFetcher.BUFFER_SIZE];
+            for (Book book : books) {
+                while (next < books.size() && pending.size() < bookFileFetcher.prefetch()) {
+                    pending.add(bookFileFetcher.open(books.get(next++).getFile_url()));
+                }
+                Failure failure = writeEntry(zipOut, book, pending.poll(), entryNames, buffer, progress);
+                if (failure != null) {
+                    failed.add(failure);
+                    fetchFailures++;
+                } else {
+                    suggestionIndex.recordAccess(book.getBook_id());
+                }
+                progress.entryWritten(++done, fetchFailures, books.size());
+            }
+            if (!failed.isEmpty()) {
+                zipOut.setLevel(Deflater.DEFAULT_COMPRESSION);
+                zipOut.putNextEntry(new ZipEntry(FAILURES_ENTRY));
+                StringBuilder report = new StringBuilder();
+                for (Failure failure : failed) {
+                    report.append(failure.bookId()).append('\t').append(failure.reason()).append('\n');
+                }
+                zipOut.write(report.toString().getBytes(StandardCharsets.UTF_8));
+                zipOut.closeEntry();
+            }
+            // Writes the central directory and flushes; the container closes the response
+            zipOut.finish();
+            zipOut.flush();
+            return fetchFailures == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building ZIP", e);
+        } finally {
+            pending.forEach(bookFileFetcher::discard);
+        }
+    }
+
+    // Copies one file into the archive; returns why it was skipped, or null
+    private Failure writeEntry(ZipOutputStream zipOut, Book book, CompletableFuture<InputStream> opening,
+                               Set<String> entryNames, byte[] buffer, Progress progress)
+            throws IOException, InterruptedException {
+        String bookId = book.getBook_id().toString();
+        InputStream in;
+        try {
+            in = opening.get();
+        } catch (ExecutionException e) {
+            logger.warn("Could not open file for book {}: {}", bookId, e.getCause().getMessage());
+            return new Failure(bookId, "Failed to download file");
+        }
+        try (in) {
+            zipOut.setLevel(isPdf(book.getFile_url()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+            zipOut.putNextEntry(new ZipEntry(entryName(book, entryNames)));
+            int length;
+            while (true) {
+                if (progress.cancelled()) {
+                    throw new CancellationException();
+                }
+                try {
+                    length = in.read(buffer);
+                } catch (IOException e) {
+                    // Part of the file is already in the archive; close the entry and say so
+                    logger.warn("Download of book {} broke off: {}", bookId, e.getMessage());
+                    zipOut.closeEntry();
+                    return new Failure(bookId, "Download interrupted, file in archive is incomplete");
+                }
+                if (length < 0) {
+                    break;
+                }
+                zipOut.write(buffer, 0, length);
+            }
+            zipOut.closeEntry();
+            return null;
+        }
+    }
+
+    private boolean isPdf(String fileUrl) {
+        return fileUrl.toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    // Title_Author.pdf, with the book_id added when two books would share a name
+    private String entryName(Book book, Set<String> used) {
+        String name = sanitizeFileName(book.getTitle() + "_" + book.getAuthor() + ".pdf");
+        return used.add(name) ? name : sanitizeFileName(book.getBook_id() + "_" + name);
+    }
+
+    private String sanitizeFileName(String fileName) {
+        return fileName.replaceAll("[^a-zA-Z0-9._-]", "_").substring(0, Math.min(fileName.length(), 100));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.E_Library.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.configuration.WorkerThreads;
+import com.example.E_Library.utils.FileUrlRewriter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Opens book files for ZIP bundles. Files in this server's uploads directory
+ * are read straight from disk through a FileChannel; anything else is fetched
+ * with the download HTTP client (its own connection pool, not Supabase's) on
+ * a bounded pool, so connecting and waiting for the first byte happen in the
+ * background for the next few files while the caller is still streaming the
+ * current one. Bodies are read by the caller, so nothing is buffered beyond
+ * the socket.
+ */
+@Service
+public class BookFileFetcher {
+
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final UploadStore uploadStore;
+    private final FileUrlRewriter fileUrlRewriter;
+    private final CloseableHttpClient httpClient;
+    private final int threads;
+    private final Timer openTimer;
+    private final Counter localOpens;
+    private final Counter remoteOpens;
+
+    public BookFileFetcher(UploadStore uploadStore,
+                           FileUrlRewriter fileUrlRewriter,
+                           CloseableHttpClient downloadHttpClient,
+                           @Value("${app.download.threads:8}") int threads,
+                           @Value("${app.download.queue-capacity:256}") int queueCapacity,
+                           WorkerThreads workerThreads,
+                           MeterRegistry meterRegistry) {
+        this.uploadStore = uploadStore;
+        this.fileUrlRewriter = fileUrlRewriter;
+        // Pool-acquire and read timeouts come from the client's defaults
+        this.httpClient = downloadHttpClient;
+        this.threads = threads;
+        // A full queue makes the requesting thread open the file itself, which slows
+        // that bundle down instead of failing it
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                workerThreads.platformThreads("book-fetch"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        Gauge.builder("download.fetch.queue.depth", executor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("download.fetch.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.openTimer = Timer.builder("download.fetch.open").register(meterRegistry);
+        this.localOpens = Counter.builder("download.fetch.opens").tag("source", "local").register(meterRegistry);
+        this.remoteOpens = Counter.builder("download.fetch.opens").tag("source", "remote").register(meterRegistry);
+    }
+
+    /**
+     * How many files a bundle should have opening ahead of the one it is
+     * writing. Opened streams wait on their read timeout, so this stays small.
+     */
+    public int prefetch() {
+        return threads;
+    }
+
+    /**
+     * Opens fileUrl: directly from the uploads directory when it is one of
+     * ours, otherwise in the background over HTTP (relative paths resolved
+     * against the public base URL). The caller must close the stream, or
+     * call {@link #discard} if it no longer wants it.
+     */
+    public CompletableFuture<InputStream> open(String fileUrl) {
+        Path local = uploadStore.localFile(fileUrl);
+        if (local != null) {
+            localOpens.increment();
+            try {
+                return CompletableFuture.completedFuture(openLocal(local));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        remoteOpens.increment();
+        CompletableFuture<InputStream> opening = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                InputStream in = openTimer.recordCallable(() -> openRemote(fileUrl));
+                // Discarded while connecting: nobody will read this stream, and it holds a pooled connection
+                if (!opening.complete(in)) {
+                    closeQuietly(in);
+                }
+            } catch (Exception e) {
+                opening.completeExceptionally(e);
+            }
+        });
+        return opening;
+    }
+
+    /**
+     * Gives up on an open. Whichever side finishes second closes the stream:
+     * this call if the open already succeeded, otherwise the opening task,
+     * whose result can no longer be delivered once the future is cancelled.
+     */
+    public void discard(CompletableFuture<InputStream> pending) {
+        pending.cancel(false);
+        pending.thenAccept(BookFileFetcher::closeQuietly);
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // the connection is dropped rather than returned to the pool
+        }
+    }
+
+    // Reads go from the channel straight into the caller's buffer, with no BufferedInputStream copy
+    InputStream openLocal(Path file) throws IOException {
+        return Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    InputStream openRemote(String fileUrl) throws IOException {
+        URI uri = URI.create(fileUrlRewriter.toPublicUrl(fileUrl));
+        HttpGet get = new HttpGet(uri);
+        ClassicHttpResponse response = httpClient.executeOpen(HttpHost.create(uri), get, null);
+        HttpEntity entity = response.getEntity();
+        if (response.getCode() != HttpStatus.SC_OK || entity == null) {
+            response.close();
+            throw new IOException("HTTP " + response.getCode() + " for " + fileUrl);
+        }
+        // Closing the body closes the response, which hands the connection back to the pool
+        return new FilterInputStream(entity.getContent()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    response.close();
+                }
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
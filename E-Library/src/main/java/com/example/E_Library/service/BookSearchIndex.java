@@ -0,0 +1,568 @@
+package com.example.E_Library.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.utils.TextAnalyzer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * In-memory inverted index over book title, author and description, ranked
+ * with BM25F (BM25 with per-field weights and length normalisation).
+ * CatalogIndexer loads and updates it, so searches never leave the JVM.
+ *
+ * Books are numbered with dense ordinals so posting lists are plain int
+ * arrays and a query accumulates scores in a reusable double[].
+ */
+@Service
+public class BookSearchIndex implements CatalogIndex {
+
+    private static final int TITLE = 0;
+    private static final int AUTHOR = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int FIELDS = 3;
+    private static final double[] FIELD_WEIGHTS = {3.0, 2.0, 1.0};
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Bounds the work for a one-letter trailing prefix such as "a"
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    // Fuzzy mode: how many misspelt variants of a query word are scored
+    private static final int MAX_FUZZY_EXPANSIONS = 64;
+    private static final char GRAM_PAD = '$';
+
+    /** One page of ranked hits plus the total number of matching books. */
+    public record Result(List<Book> items, int total) {
+    }
+
+    private static final class Doc {
+        final Book book;
+        final int ordinal;
+        final int[] lengths = new int[FIELDS];
+        final Map<String, int[]> termFrequencies = new HashMap<>();
+
+        Doc(Book book, int ordinal) {
+            this.book = book;
+            this.ordinal = ordinal;
+        }
+    }
+
+    // Books containing one term, with FIELDS frequencies per book
+    private static final class PostingList {
+        final String term;
+        final int id;
+        final long letters;
+        int size;
+        int[] ordinals = new int[2];
+        int[] frequencies = new int[2 * FIELDS];
+
+        PostingList(String term, int id) {
+            this.term = term;
+            this.id = id;
+            this.letters = letters(term);
+        }
+
+        void add(int ordinal, int[] termFrequencies) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2 * FIELDS);
+            }
+            ordinals[size] = ordinal;
+            System.arraycopy(termFrequencies, 0, frequencies, size * FIELDS, FIELDS);
+            size++;
+        }
+
+        // Order does not matter, so the last entry fills the gap
+        void remove(int ordinal) {
+            for (int i = 0; i < size; i++) {
+                if (ordinals[i] == ordinal) {
+                    size--;
+                    ordinals[i] = ordinals[size];
+                    System.arraycopy(frequencies, size * FIELDS, frequencies, i * FIELDS, FIELDS);
+                    return;
+                }
+            }
+        }
+    }
+
+    // Per-query accumulators, pooled so a search does not allocate arrays the size of the catalog
+    private static final class Scratch {
+        double[] scores = new double[0];
+        double[] wordScores = new double[0];
+        int[] touched = new int[0];
+        int[] wordTouched = new int[0];
+        // Fuzzy mode: shared trigram counts by term id, and the terms counted
+        int[] sharedGrams = new int[0];
+        PostingList[] candidates = new PostingList[0];
+
+        void ensureCapacity(int capacity, int termCapacity) {
+            if (scores.length < capacity) {
+                scores = new double[capacity];
+                wordScores = new double[capacity];
+                touched = new int[capacity];
+                wordTouched = new int[capacity];
+            }
+            if (sharedGrams.length < termCapacity) {
+                sharedGrams = new int[termCapacity];
+                candidates = new PostingList[termCapacity];
+            }
+        }
+    }
+
+    private final Timer queryTimer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private Doc[] byOrdinal = new Doc[16];
+    private int ordinalLimit;
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+    // Trigram -> terms containing it, the candidate filter for fuzzy matching
+    private final Map<String, List<PostingList>> termsByTrigram = new HashMap<>();
+    private int termIdLimit;
+    private final ArrayDeque<Integer> freeTermIds = new ArrayDeque<>();
+    private final long[] totalLengths = new long[FIELDS];
+    private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    public BookSearchIndex(MeterRegistry meterRegistry) {
+        this.queryTimer = Timer.builder("search.index.query").register(meterRegistry);
+        Gauge.builder("search.index.books", this, index -> index.size()).register(meterRegistry);
+        Gauge.builder("search.index.terms", this, index -> index.termCount()).register(meterRegistry);
+    }
+
+    @Override
+    public void load(List<Book> books) {
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            postings.clear();
+            termsByTrigram.clear();
+            termIdLimit = 0;
+            freeTermIds.clear();
+            byOrdinal = new Doc[Math.max(16, books.size())];
+            ordinalLimit = 0;
+            freeOrdinals.clear();
+            Arrays.fill(totalLengths, 0);
+            for (Book book : books) {
+                addDoc(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        lock.writeLock().lock();
+        try {
+            removeDoc(book.getBook_id());
+            addDoc(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Integer bookId) {
+        lock.writeLock().lock();
+        try {
+            removeDoc(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked search. Each query word matches whole terms; the last word also
+     * matches as a prefix so results keep up while the user is typing. A
+     * blank query returns every book in book_id order.
+     */
+    public Result search(String query, int offset, int limit) {
+        return search(query, offset, limit, false);
+    }
+
+    /**
+     * As {@link #search(String, int, int)}; with fuzzy set, each word also
+     * matches terms within a small edit distance (see {@link #maxEdits}), scored
+     * like an exact match but scaled down by the number of edits.
+     */
+    public Result search(String query, int offset, int limit, boolean fuzzy) {
+        long start = System.nanoTime();
+        Scratch scratch = borrowScratch();
+        lock.readLock().lock();
+        try {
+            List<String> words = TextAnalyzer.tokenize(query);
+            if (words.isEmpty()) {
+                return allBooks(offset, limit);
+            }
+
+            scratch.ensureCapacity(ordinalLimit, fuzzy ? termIdLimit : 0);
+            double[] averageLengths = new double[FIELDS];
+            for (int field = 0; field < FIELDS; field++) {
+                averageLengths[field] = (double) totalLengths[field] / docs.size();
+            }
+            int touchedCount = 0;
+            for (int i = 0; i < words.size(); i++) {
+                boolean prefix = i == words.size() - 1;
+                int wordTouchedCount = scoreWord(words.get(i), prefix, fuzzy, averageLengths, scratch);
+                // Fold the word's best score per book into the query total
+                for (int j = 0; j < wordTouchedCount; j++) {
+                    int ordinal = scratch.wordTouched[j];
+                    if (scratch.scores[ordinal] == 0) {
+                        scratch.touched[touchedCount++] = ordinal;
+                    }
+                    scratch.scores[ordinal] += scratch.wordScores[ordinal];
+                    scratch.wordScores[ordinal] = 0;
+                }
+            }
+            List<Book> page = topHits(scratch, touchedCount, offset, limit);
+            for (int j = 0; j < touchedCount; j++) {
+                scratch.scores[scratch.touched[j]] = 0;
+            }
+            return new Result(page, touchedCount);
+        } finally {
+            lock.readLock().unlock();
+            scratchPool.offer(scratch);
+            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Scratch borrowScratch() {
+        Scratch scratch = scratchPool.poll();
+        return scratch != null ? scratch : new Scratch();
+    }
+
+    /**
+     * Scores one query word into scratch.wordScores, keeping per book the best
+     * of its prefix and fuzzy expansions. Returns how many books it touched.
+     */
+    private int scoreWord(String word, boolean prefix, boolean fuzzy, double[] averageLengths, Scratch scratch) {
+        Map<String, PostingList> terms = prefix
+                ? postings.subMap(word, true, word + Character.MAX_VALUE, false)
+                : exactTerm(word);
+        int touched = 0;
+        int expansions = 0;
+        for (PostingList term : terms.values()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            touched = scoreTerm(term, 1.0, averageLengths, scratch, touched);
+        }
+        if (fuzzy) {
+            for (FuzzyMatch match : fuzzyTerms(word, scratch)) {
+                touched = scoreTerm(match.term(), 1.0 / (1 + match.distance()), averageLengths, scratch, touched);
+            }
+        }
+        return touched;
+    }
+
+    private int scoreTerm(PostingList term, double boost, double[] averageLengths, Scratch scratch, int touched) {
+        double idf = idf(term.size) * boost;
+        for (int i = 0; i < term.size; i++) {
+            int ordinal = term.ordinals[i];
+            double score = idf * saturate(weightedFrequency(term.frequencies, i * FIELDS,
+                    byOrdinal[ordinal].lengths, averageLengths));
+            double previous = scratch.wordScores[ordinal];
+            if (previous == 0) {
+                scratch.wordTouched[touched++] = ordinal;
+            }
+            if (score > previous) {
+                scratch.wordScores[ordinal] = score;
+            }
+        }
+        return touched;
+    }
+
+    private record FuzzyMatch(PostingList term, int distance) {
+    }
+
+    // Lucene-style budget: short words must match exactly, longer ones tolerate more typos
+    static int maxEdits(String word) {
+        return word.length() < 4 ? 0 : word.length() < 8 ? 1 : 2;
+    }
+
+    /**
+     * Terms within maxEdits(word) edits of word, excluding word itself,
+     * closest first. One edit (a transposition included) changes at most four
+     * of the word's padded trigrams, so a term sharing fewer than
+     * grams - 4 * edits of them cannot qualify; at least one shared trigram is
+     * always required. An edit also adds or drops at most one distinct letter,
+     * which the letter sets check in a couple of instructions. Only the
+     * survivors pay for an edit-distance check.
+     */
+    private List<FuzzyMatch> fuzzyTerms(String word, Scratch scratch) {
+        int edits = maxEdits(word);
+        if (edits == 0) {
+            return List.of();
+        }
+        List<String> grams = trigrams(word);
+        int required = Math.max(1, grams.size() - 4 * edits);
+        int[] shared = scratch.sharedGrams;
+        long letters = letters(word);
+        int candidateCount = 0;
+        for (String gram : grams) {
+            for (PostingList term : termsByTrigram.getOrDefault(gram, List.of())) {
+                if (Math.abs(term.term.length() - word.length()) <= edits && shared[term.id]++ == 0) {
+                    scratch.candidates[candidateCount++] = term;
+                }
+            }
+        }
+        List<FuzzyMatch> matches = new ArrayList<>();
+        for (int i = 0; i < candidateCount; i++) {
+            PostingList candidate = scratch.candidates[i];
+            boolean enoughGrams = shared[candidate.id] >= required;
+            shared[candidate.id] = 0;
+            if (!enoughGrams || Long.bitCount(letters & ~candidate.letters) > edits
+                    || Long.bitCount(candidate.letters & ~letters) > edits) {
+                continue;
+            }
+            int distance = editDistance(word, candidate.term, edits);
+            if (distance > 0 && distance <= edits) {
+                matches.add(new FuzzyMatch(candidate, distance));
+            }
+        }
+        // Closest first, then the more common spelling
+        matches.sort((a, b) -> a.distance() != b.distance()
+                ? Integer.compare(a.distance(), b.distance())
+                : Integer.compare(b.term().size, a.term().size));
+        return matches.size() > MAX_FUZZY_EXPANSIONS ? matches.subList(0, MAX_FUZZY_EXPANSIONS) : matches;
+    }
+
+    // Set of characters in the term, folded into 64 bits (a collision can only shrink a difference)
+    static long letters(String term) {
+        long letters = 0;
+        for (int i = 0; i < term.length(); i++) {
+            letters |= 1L << (term.charAt(i) & 63);
+        }
+        return letters;
+    }
+
+    // Distinct trigrams of the term padded with one marker each side, so word edges count too
+    static List<String> trigrams(String term) {
+        String padded = GRAM_PAD + term + GRAM_PAD;
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String gram = padded.substring(i, i + 3);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Levenshtein distance between a and b with swapped neighbouring letters
+     * counted as one edit ("ancinet" is one edit from "ancient"). Only the
+     * diagonal band |i - j| <= max is filled, and it gives up with max + 1 as
+     * soon as every cell of a row exceeds max.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int over = max + 1;
+        int[] beforePrevious = new int[b.length() + 2];
+        int[] previous = new int[b.length() + 2];
+        int[] current = new int[b.length() + 2];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = Math.min(j, over);
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            current[0] = Math.min(i, over);
+            // Cells just outside the band may hold values from an older row
+            current[from - 1] = from == 1 ? current[0] : over;
+            current[to + 1] = over;
+            int rowMin = from == 1 ? current[0] : over;
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                char cb = b.charAt(j - 1);
+                int distance = Math.min(previous[j - 1] + (ca == cb ? 0 : 1),
+                        Math.min(previous[j], current[j - 1]) + 1);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    private Map<String, PostingList> exactTerm(String word) {
+        PostingList posting = postings.get(word);
+        return posting == null ? Collections.emptyMap() : Map.of(word, posting);
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (docs.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    // Per-field frequencies, each normalised by that field's length relative to its average
+    private double weightedFrequency(int[] frequencies, int from, int[] lengths, double[] averageLengths) {
+        double weighted = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            int frequency = frequencies[from + field];
+            if (frequency == 0) {
+                continue;
+            }
+            double norm = averageLengths[field] > 0 ? 1 - B + B * lengths[field] / averageLengths[field] : 1;
+            weighted += FIELD_WEIGHTS[field] * frequency / norm;
+        }
+        return weighted;
+    }
+
+    private double saturate(double frequency) {
+        return frequency * (K1 + 1) / (frequency + K1);
+    }
+
+    // Best first; ties go to the lower book_id so paging is stable
+    private int compare(double[] scores, int a, int b) {
+        int byScore = Double.compare(scores[b], scores[a]);
+        return byScore != 0 ? byScore : byOrdinal[a].book.getBook_id().compareTo(byOrdinal[b].book.getBook_id());
+    }
+
+    // Keeps only offset + limit hits in a heap instead of sorting every match
+    private List<Book> topHits(Scratch scratch, int touchedCount, int offset, int limit) {
+        int keep = (int) Math.min((long) offset + limit, touchedCount);
+        if (keep <= offset) {
+            return new ArrayList<>();
+        }
+        double[] scores = scratch.scores;
+        // Worst kept hit at the head, so most non-qualifying hits cost one comparison
+        PriorityQueue<Integer> heap = new PriorityQueue<>(keep, (a, b) -> compare(scores, b, a));
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = scratch.touched[i];
+            if (heap.size() < keep) {
+                heap.add(ordinal);
+            } else if (compare(scores, ordinal, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ordinal);
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(heap);
+        ranked.sort((a, b) -> compare(scores, a, b));
+        List<Book> page = new ArrayList<>(ranked.size() - offset);
+        for (int i = offset; i < ranked.size(); i++) {
+            page.add(byOrdinal[ranked.get(i)].book);
+        }
+        return page;
+    }
+
+    private Result allBooks(int offset, int limit) {
+        List<Integer> ids = new ArrayList<>(docs.keySet());
+        Collections.sort(ids);
+        List<Book> page = new ArrayList<>();
+        for (int i = offset; i < ids.size() && page.size() < limit; i++) {
+            page.add(docs.get(ids.get(i)).book);
+        }
+        return new Result(page, ids.size());
+    }
+
+    // Callers hold the write lock
+    private void addDoc(Book book) {
+        Integer free = freeOrdinals.poll();
+        int ordinal = free != null ? free : ordinalLimit++;
+        if (ordinal == byOrdinal.length) {
+            byOrdinal = Arrays.copyOf(byOrdinal, ordinal * 2);
+        }
+        Doc doc = new Doc(book, ordinal);
+        addField(doc, TITLE, book.getTitle());
+        addField(doc, AUTHOR, book.getAuthor());
+        addField(doc, DESCRIPTION, book.getDescription());
+        docs.put(book.getBook_id(), doc);
+        byOrdinal[ordinal] = doc;
+        for (Map.Entry<String, int[]> term : doc.termFrequencies.entrySet()) {
+            PostingList posting = postings.get(term.getKey());
+            if (posting == null) {
+                Integer freeId = freeTermIds.poll();
+                posting = new PostingList(term.getKey(), freeId != null ? freeId : termIdLimit++);
+                postings.put(term.getKey(), posting);
+                for (String gram : trigrams(term.getKey())) {
+                    termsByTrigram.computeIfAbsent(gram, g -> new ArrayList<>()).add(posting);
+                }
+            }
+            posting.add(ordinal, term.getValue());
+        }
+        for (int field = 0; field < FIELDS; field++) {
+            totalLengths[field] += doc.lengths[field];
+        }
+    }
+
+    private void addField(Doc doc, int field, String text) {
+        for (String term : TextAnalyzer.tokenize(text)) {
+            doc.termFrequencies.computeIfAbsent(term, t -> new int[FIELDS])[field]++;
+            doc.lengths[field]++;
+        }
+    }
+
+    private void removeDoc(Integer bookId) {
+        Doc doc = docs.remove(bookId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.termFrequencies.keySet()) {
+            PostingList posting = postings.get(term);
+            posting.remove(doc.ordinal);
+            if (posting.size == 0) {
+                postings.remove(term);
+                freeTermIds.push(posting.id);
+                for (String gram : trigrams(term)) {
+                    List<PostingList> terms = termsByTrigram.get(gram);
+                    terms.remove(posting);
+                    if (terms.isEmpty()) {
+                        termsByTrigram.remove(gram);
+                    }
+                }
+            }
+        }
+        for (int field = 0; field < FIELDS; field++) {
+            totalLengths[field] -= doc.lengths[field];
+        }
+        byOrdinal[doc.ordinal] = null;
+        freeOrdinals.push(doc.ordinal);
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.E_Library.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.model.Book;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Disk cache of built ZIP bundles, so a reading list downloaded by a whole
+ * class is only assembled once. The key is a SHA-256 over the sorted book
+ * ids and, per book, everything that ends up in the archive (file_url,
+ * uploaded_at, title, author), so re-uploading or renaming a book yields a
+ * new key and the old archive simply ages out.
+ *
+ * Index and eviction are a Caffeine cache weighed in KiB: total size is kept
+ * under the disk quota, least recently used bundles go first, and bundles not
+ * read for the TTL expire. Removal deletes the file. Every build writes its
+ * own uniquely named file, so a late delete never hits a newer build.
+ *
+ * A miss streams the bundle to the client and to the cache file at the same
+ * time. Concurrent misses for the same key wait for that single build and are
+ * then served from its file.
+ */
+@Service
+public class BundleCache {
+    private static final Logger logger = LoggerFactory.getLogger(BundleCache.class);
+
+    private static final String SUFFIX = ".zip";
+    private static final String PART_SUFFIX = ".part";
+
+    private record CachedBundle(Path path, long size) {
+    }
+
+    private final BookBundleService bookBundleService;
+    private final Path directory;
+    private final Cache<String, CachedBundle> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<CachedBundle>> building = new ConcurrentHashMap<>();
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter coalesced;
+    private final Counter misses;
+    private final Counter bytesSaved;
+
+    public BundleCache(BookBundleService bookBundleService,
+                       @Value("${app.bundle-cache.path:${java.io.tmpdir}/e-library/bundles}") String path,
+                       @Value("${app.bundle-cache.max-bytes:1073741824}") long maxBytes,
+                       @Value("${app.bundle-cache.ttl-hours:24}") long ttlHours,
+                       MeterRegistry meterRegistry) throws IOException {
+        this.bookBundleService = bookBundleService;
+        this.directory = Files.createDirectories(Paths.get(path));
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(maxBytes / 1024, 0))
+                .weigher((String key, CachedBundle bundle) -> (int) Math.min(Integer.MAX_VALUE, bundle.size() / 1024 + 1))
+                .expireAfterAccess(Duration.ofHours(ttlHours))
+                .removalListener((String key, CachedBundle bundle, RemovalCause cause) -> delete(bundle))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "bundles");
+
+        this.hits = Counter.builder("bundle.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.coalesced = Counter.builder("bundle.cache.requests").tag("result", "coalesced").register(meterRegistry);
+        this.misses = Counter.builder("bundle.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.bytesSaved = Counter.builder("bundle.cache.bytes.saved").baseUnit("bytes")
+                .description("Archive bytes served from the cache instead of being rebuilt")
+                .register(meterRegistry);
+        Gauge.builder("bundle.cache.hit.ratio", this, BundleCache::hitRatio).register(meterRegistry);
+        Gauge.builder("bundle.cache.disk.bytes", diskBytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+
+        adoptExistingFiles();
+    }
+
+    /**
+     * Writes the bundle's archive to out, from the cache when possible.
+     * Builds that could not fetch every file are sent but not cached.
+     */
+    public void serve(BookBundleService.Bundle bundle, OutputStream out) throws IOException {
+        serve(bundle, out, BookBundleService.Progress.NONE);
+    }
+
+    // Archives served from the cache report all their entries at once, when the copy is done (cached
+    // archives never have fetch failures)
+    public void serve(BookBundleService.Bundle bundle, OutputStream out, BookBundleService.Progress progress)
+            throws IOException {
+        String key = key(bundle);
+        int entries = bundle.books().size();
+        CachedBundle cached = cache.getIfPresent(key);
+        if (cached != null && copy(cached, out)) {
+            hits.increment();
+            bytesSaved.increment(cached.size());
+            progress.entryWritten(entries, 0, entries);
+            return;
+        }
+
+        CompletableFuture<CachedBundle> build = new CompletableFuture<>();
+        CompletableFuture<CachedBundle> inFlight = building.putIfAbsent(key, build);
+        if (inFlight != null) {
+            CachedBundle built = await(inFlight);
+            if (built != null && copy(built, out)) {
+                coalesced.increment();
+                bytesSaved.increment(built.size());
+                progress.entryWritten(entries, 0, entries);
+                return;
+            }
+            // The other build failed or was not cacheable: build for this client only
+            misses.increment();
+            bookBundleService.write(bundle, out, progress);
+            return;
+        }
+
+        misses.increment();
+        Path part = directory.resolve(key + "-" + UUID.randomUUID() + PART_SUFFIX);
+        CachedBundle result = null;
+        try {
+            TeeOutputStream tee;
+            boolean complete;
+            try (OutputStream file = Files.newOutputStream(part)) {
+                tee = new TeeOutputStream(out, file);
+                complete = bookBundleService.write(bundle, tee, progress);
+            }
+            if (complete) {
+                Path target = directory.resolve(part.getFileName().toString().replace(PART_SUFFIX, SUFFIX));
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+                result = new CachedBundle(target, Files.size(target));
+                diskBytes.addAndGet(result.size());
+                cache.put(key, result);
+            }
+            tee.rethrowClientFailure();
+        } finally {
+            Files.deleteIfExists(part);
+            build.complete(result);
+            building.remove(key, build);
+        }
+    }
+
+    static String key(BookBundleService.Bundle bundle) {
+        List<String> lines = new ArrayList<>();
+        for (Book book : bundle.books()) {
+            lines.add(book.getBook_id() + "\t" + book.getFile_url() + "\t" + book.getUploaded_at()
+                    + "\t" + book.getTitle() + "\t" + book.getAuthor());
+        }
+        for (BookBundleService.Failure failure : bundle.failed()) {
+            lines.add("!" + failure.bookId() + "\t" + failure.reason());
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // prepareAsync() already sorts; bundle order is part of the archive, so it is hashed as is
+            for (String line : lines) {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private double hitRatio() {
+        double served = hits.count() + coalesced.count();
+        double total = served + misses.count();
+        return total == 0 ? 0 : served / total;
+    }
+
+    private CachedBundle await(CompletableFuture<CachedBundle> inFlight) throws IOException {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for bundle build", e);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    // False if the file has been evicted in the meantime; the caller then builds instead
+    private boolean copy(CachedBundle bundle, OutputStream out) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(bundle.path(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        // Once open, the file stays readable even if eviction deletes it
+        try (InputStream in = Channels.newInputStream(channel)) {
+            byte[] buffer = new byte[BookFileFetcher.BUFFER_SIZE];
+            int length;
+            while ((length = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, length);
+            }
+            out.flush();
+        }
+        return true;
+    }
+
+    private void delete(CachedBundle bundle) {
+        if (bundle == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(bundle.path());
+            diskBytes.addAndGet(-bundle.size());
+        } catch (IOException e) {
+            logger.warn("Could not delete cached bundle {}: {}", bundle.path(), e.getMessage());
+        }
+    }
+
+    // Keeps bundles from before a restart (they count against the quota) and drops half-written ones
+    private void adoptExistingFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dash = name.indexOf('-');
+                if (name.endsWith(PART_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(SUFFIX) && dash == 64) {
+                    CachedBundle bundle = new CachedBundle(file, Files.size(file));
+                    diskBytes.addAndGet(bundle.size());
+                    cache.put(name.substring(0, dash), bundle);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the archive to the client and the cache file. If the client goes
+     * away the build still finishes into the file, so a waiting request or
+     * the next one gets it; the client's error is rethrown at the end.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream client;
+        private final OutputStream file;
+        private IOException clientFailure;
+
+        TeeOutputStream(OutputStream client, OutputStream file) {
+            this.client = client;
+            this.file = file;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            file.write(b, off, len);
+            if (clientFailure == null) {
+                try {
+                    client.write(b, off, len);
+                } catch (IOException e) {
+                    clientFailure = e;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            file.flush();
+            if (clientFailure == null) {
+                try {
+                    client.flush();
+                } catch (IOException e) {
+                    clientFailure = e;
+                }
+            }
+        }
+
+        void rethrowClientFailure() throws IOException {
+            if (clientFailure != null) {
+                throw clientFailure;
+            }
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.E_Library.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.configuration.WorkerThreads;
+import com.example.E_Library.exceptions.ResourceNotFoundException;
+import com.example.E_Library.exceptions.ServiceBusyException;
+import com.example.E_Library.exceptions.TooManyRequestsException;
+import com.example.E_Library.model.BundleJobStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Background builds for /books/download-multiple, so large selections do not
+ * hold a request thread (and the client's connection) for minutes. A job
+ * builds the archive into a file on a small bounded pool, through BundleCache
+ * so repeat selections are still copied rather than rebuilt, and reports
+ * per-book progress. Clients poll the job, or long-poll until it finishes,
+ * then download the file.
+ *
+ * Each user can have a few jobs queued or running at once. Cancelling stops
+ * a build at the next read of a book file or write to the archive. Finished
+ * jobs and their archives are kept for the TTL and then deleted.
+ */
+@Service
+public class BundleJobService {
+    private static final Logger logger = LoggerFactory.getLogger(BundleJobService.class);
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String owner;
+        final BookBundleService.Bundle bundle;
+        final long submittedAt = System.nanoTime();
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+        final AtomicBoolean released = new AtomicBoolean();
+        volatile State state = State.QUEUED;
+        volatile boolean cancelRequested;
+        volatile int filesDone;
+        volatile int filesFailed;
+        volatile long bytesWritten;
+        volatile Path artifact;
+        volatile String error;
+        volatile Future<?> task;
+
+        Job(String owner, BookBundleService.Bundle bundle) {
+            this.owner = owner;
+            this.bundle = bundle;
+            this.filesFailed = bundle.failed().size();
+        }
+
+        boolean isFinished() {
+            return state == State.COMPLETED || state == State.FAILED || state == State.CANCELLED;
+        }
+
+        BundleJobStatus status() {
+            return new BundleJobStatus(id, state.name(), filesDone, bundle.books().size(), filesFailed, bytesWritten,
+                    state == State.COMPLETED ? "/books/download-jobs/" + id + "/file" : null, error);
+        }
+    }
+
+    private final BundleCache bundleCache;
+    private final Path directory;
+    private final ThreadPoolExecutor executor;
+    private final int maxPerUser;
+    // Unfinished jobs per user
+    private final ConcurrentHashMap<String, Integer> activeByOwner = new ConcurrentHashMap<>();
+    private final Cache<String, Job> jobs;
+    private final MeterRegistry meterRegistry;
+
+    public BundleJobService(BundleCache bundleCache,
+                            @Value("${app.bundle-jobs.path:${java.io.tmpdir}/e-library/jobs}") String path,
+                            @Value("${app.bundle-jobs.threads:2}") int threads,
+                            @Value("${app.bundle-jobs.queue-capacity:32}") int queueCapacity,
+                            @Value("${app.bundle-jobs.max-per-user:2}") int maxPerUser,
+                            @Value("${app.bundle-jobs.ttl-minutes:60}") long ttlMinutes,
+                            WorkerThreads workerThreads,
+                            MeterRegistry meterRegistry) throws IOException {
+        this.bundleCache = bundleCache;
+        this.directory = Files.createDirectories(Paths.get(path));
+        this.maxPerUser = maxPerUser;
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), workerThreads.platformThreads("bundle-job"));
+        // Jobs never expire while queued or running; once finished they (and their archives) live for the TTL
+        long ttlNanos = Duration.ofMinutes(ttlMinutes).toNanos();
+        this.jobs = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Job>() {
+                    @Override
+                    public long expireAfterCreate(String id, Job job, long currentTime) {
+                        return job.isFinished() ? ttlNanos : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String id, Job job, long currentTime,
+                                                  long currentDuration) {
+                        return job.isFinished() ? ttlNanos : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String id, Job job, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((String id, Job job, RemovalCause cause) -> discard(job))
+                .build();
+
+        Gauge.builder("bundle.jobs.queue.depth", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        Gauge.builder("bundle.jobs.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("bundle.jobs.retained", jobs, Cache::estimatedSize).register(meterRegistry);
+
+        deleteLeftoverFiles();
+    }
+
+    /**
+     * Queues a build of bundle for owner. Throws TooManyRequestsException when
+     * owner already has the maximum number of unfinished jobs, and
+     * ServiceBusyException when the queue is full.
+     */
+    public BundleJobStatus submit(String owner, BookBundleService.Bundle bundle) {
+        boolean[] admitted = new boolean[1];
+        activeByOwner.compute(owner, (key, active) -> {
+            int count = active != null ? active : 0;
+            admitted[0] = count < maxPerUser;
+            return admitted[0] ? count + 1 : active;
+        });
+        if (!admitted[0]) {
+            throw new TooManyRequestsException("You already have " + maxPerUser
+                    + " downloads being prepared; wait for one to finish or cancel it");
+        }
+        Job job = new Job(owner, bundle);
+        jobs.put(job.id, job);
+        try {
+            job.task = executor.submit(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.id);
+            release(job);
+            throw new ServiceBusyException("Too many downloads are being prepared, try again shortly", 5);
+        }
+        logger.info("Queued bundle job {} for {} ({} books)", job.id, owner, bundle.books().size());
+        return job.status();
+    }
+
+    public BundleJobStatus status(String owner, String id) {
+        return job(owner, id).status();
+    }
+
+    // Completes when the job is finished, with its final status
+    public CompletableFuture<BundleJobStatus> whenFinished(String owner, String id) {
+        Job job = job(owner, id);
+        return job.finished.thenApply(ignored -> job.status());
+    }
+
+    // The finished archive, or null while the job is not COMPLETED
+    public Path artifact(String owner, String id) {
+        Job job = job(owner, id);
+        return job.state == State.COMPLETED ? job.artifact : null;
+    }
+
+    /**
+     * Cancels an unfinished job. A finished job is dropped along with its
+     * archive instead. A running build is stopped through its progress, not
+     * just its output stream: on a cache miss BundleCache tees the archive
+     * into its own file and carries on when the job's stream fails.
+     */
+    public BundleJobStatus cancel(String owner, String id) {
+        Job job = job(owner, id);
+        if (job.isFinished()) {
+            jobs.invalidate(id);
+            return job.status();
+        }
+        boolean queued;
+        synchronized (job) {
+            job.cancelRequested = true;
+            queued = job.state == State.QUEUED;
+        }
+        Future<?> task = job.task;
+        if (queued) {
+            // It will never start; run() checks the flag in case it was already picked up
+            if (task != null) {
+                task.cancel(false);
+            }
+            finish(job, State.CANCELLED, null);
+        } else if (task != null) {
+            // Interrupting unblocks a build waiting on a file
+            task.cancel(true);
+        }
+        return job.status();
+    }
+
+    private void run(Job job) {
+        synchronized (job) {
+            if (job.cancelRequested) {
+                return;
+            }
+            job.state = State.RUNNING;
+        }
+        Path part = directory.resolve(job.id + ".part");
+        try {
+            try (OutputStream out = new JobOutputStream(Files.newOutputStream(part), job)) {
+                bundleCache.serve(job.bundle, out, new JobProgress(job));
+            }
+            Path archive = directory.resolve(job.id + ".zip");
+            Files.move(part, archive, StandardCopyOption.ATOMIC_MOVE);
+            job.artifact = archive;
+            finish(job, State.COMPLETED, null);
+        } catch (CancellationException | InterruptedIOException e) {
+            finish(job, State.CANCELLED, null);
+        } catch (Exception e) {
+            if (job.cancelRequested) {
+                finish(job, State.CANCELLED, null);
+            } else {
+                logger.warn("Bundle job {} failed: {}", job.id, e.getMessage());
+                finish(job, State.FAILED, "Could not build the archive");
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                logger.warn("Could not delete partial archive {}: {}", part, e.getMessage());
+            }
+        }
+    }
+
+    private void finish(Job job, State state, String error) {
+        if (!release(job)) {
+            return;
+        }
+        job.error = error;
+        job.state = state;
+        Timer.builder("bundle.jobs.duration").tag("state", state.name().toLowerCase())
+                .register(meterRegistry)
+                .record(System.nanoTime() - job.submittedAt, TimeUnit.NANOSECONDS);
+        // Re-inserting starts the TTL now that the job is finished
+        jobs.asMap().replace(job.id, job, job);
+        job.finished.complete(null);
+        logger.info("Bundle job {} {} ({} of {} books)", job.id, state, job.filesDone, job.bundle.books().size());
+    }
+
+    // Frees the owner's slot once per job; false if that already happened
+    private boolean release(Job job) {
+        if (!job.released.compareAndSet(false, true)) {
+            return false;
+        }
+        activeByOwner.computeIfPresent(job.owner, (owner, active) -> active > 1 ? active - 1 : null);
+        return true;
+    }
+
+    // Jobs are private to the user who started them; anyone else gets the same 404 as for an unknown id
+    private Job job(String owner, String id) {
+        Job job = jobs.getIfPresent(id);
+        if (job == null || !job.owner.equals(owner)) {
+            throw new ResourceNotFoundException("Download job not found: " + id);
+        }
+        return job;
+    }
+
+    private void discard(Job job) {
+        if (job == null || job.artifact == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(job.artifact);
+        } catch (IOException e) {
+            logger.warn("Could not delete archive {}: {}", job.artifact, e.getMessage());
+        }
+    }
+
+    // Jobs do not survive a restart, so neither do their files
+    private void deleteLeftoverFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Records per-book progress and stops the build once the job is cancelled
+    private static final class JobProgress implements BookBundleService.Progress {
+        private final Job job;
+
+        JobProgress(Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public void entryWritten(int done, int failed, int total) {
+            job.filesDone = done;
+            job.filesFailed = job.bundle.failed().size() + failed;
+            if (job.cancelRequested) {
+                throw new CancellationException();
+            }
+        }
+
+        @Override
+        public boolean cancelled() {
+            return job.cancelRequested;
+        }
+    }
+
+    // Counts what the job has written and stops it at the next write once it is cancelled
+    private static final class JobOutputStream extends FilterOutputStream {
+        private final Job job;
+
+        JobOutputStream(OutputStream out, Job job) {
+            super(out);
+            this.job = job;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (job.cancelRequested) {
+                throw new InterruptedIOException("Bundle job cancelled");
+            }
+            out.write(b, off, len);
+            job.bytesWritten += len;
+        }
+    }
+}
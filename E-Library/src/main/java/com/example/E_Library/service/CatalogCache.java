@@ -0,0 +1,144 @@
+package com.example.E_Library.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.BookCategory;
+import com.example.E_Library.repository.SupabaseGuard;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Read-through cache for catalog reads (books list, single books, categories).
+ * Entries older than the refresh interval are still served while a background
+ * reload runs, so a slow Supabase response does not reach the user. List,
+ * page and count entries are keyed by a version that writes bump, which makes
+ * everything cached before the write unreachable at once.
+ *
+ * Entries are futures: concurrent misses share one load, and a caller
+ * waiting on Supabase holds no thread.
+ *
+ * Every value loaded is also kept, regardless of version, as the last known
+ * good one for its kind and id. When a load fails because Supabase is
+ * unavailable (5xx, timeout, open circuit) that value is served instead,
+ * flagged stale, for up to staleTtl after it was loaded.
+ */
+public class CatalogCache {
+
+    public static final String BOOKS = "books";
+    public static final String BOOK = "book";
+    public static final String BOOKS_PAGE = "books-page";
+    public static final String BOOKS_COUNT = "books-count";
+    public static final String CATEGORIES = "categories";
+
+    // Warning header value for responses built from a stale entry (RFC 7234 warn-code 110)
+    public static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    /**
+     * Fetches one entry from Supabase. Completing with null (e.g. a book id
+     * that does not exist yet) or failing means nothing is cached.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        CompletableFuture<?> load(String kind, String id);
+    }
+
+    // A value and whether it is a fallback from before Supabase became unavailable
+    public record Entry<T>(T value, boolean stale) {
+    }
+
+    private record Key(String kind, String id, long version) {
+    }
+
+    private record Slot(String kind, String id) {
+    }
+
+    private final AsyncLoadingCache<Key, Object> cache;
+    private final Cache<Slot, Object> lastGood;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong booksVersion = new AtomicLong();
+    private final AtomicLong categoriesVersion = new AtomicLong();
+
+    public CatalogCache(Duration ttl, Duration refreshAfter, Duration staleTtl, long maxSize,
+                        MeterRegistry meterRegistry, Loader loader) {
+        this.lastGood = Caffeine.newBuilder()
+                .expireAfterWrite(staleTtl)
+                .maximumSize(maxSize)
+                .build();
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refreshAfter)
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync((key, executor) -> loader.load(key.kind(), key.id()).thenApply(value -> {
+                    if (value != null) {
+                        lastGood.put(new Slot(key.kind(), key.id()), value);
+                    }
+                    return value;
+                }));
+        this.meterRegistry = meterRegistry;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "catalog");
+    }
+
+    public CompletableFuture<Entry<List<Book>>> books() {
+        return get(new Key(BOOKS, null, booksVersion.get()));
+    }
+
+    // completes with a null value when no book has this id
+    public CompletableFuture<Entry<Book>> book(String id) {
+        return get(new Key(BOOK, id, 0));
+    }
+
+    // id is "<cursor>:<limit>"; shares the books version so any book write drops every page
+    public CompletableFuture<Entry<List<Book>>> booksPage(Integer cursor, int limit) {
+        return get(new Key(BOOKS_PAGE, (cursor == null ? "" : cursor) + ":" + limit, booksVersion.get()));
+    }
+
+    public CompletableFuture<Entry<Long>> booksCount() {
+        return get(new Key(BOOKS_COUNT, null, booksVersion.get()));
+    }
+
+    public CompletableFuture<Entry<List<BookCategory>>> categories() {
+        return get(new Key(CATEGORIES, null, categoriesVersion.get()));
+    }
+
+    // A book was added: only the list changes
+    public void invalidateBooks() {
+        cache.synchronous().invalidate(new Key(BOOKS, null, booksVersion.getAndIncrement()));
+    }
+
+    // A book was updated or deleted: its own entry and every list containing it
+    public void invalidateBook(String id) {
+        cache.synchronous().invalidate(new Key(BOOK, id, 0));
+        // Known to be wrong now; lists keep their fallback, which is the lesser evil
+        lastGood.invalidate(new Slot(BOOK, id));
+        invalidateBooks();
+    }
+
+    public void invalidateCategories() {
+        cache.synchronous().invalidate(new Key(CATEGORIES, null, categoriesVersion.getAndIncrement()));
+    }
+
+    // A copy per caller, so one caller cancelling its future cannot fail the shared load
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<Entry<T>> get(Key key) {
+        return cache.get(key).copy()
+                .thenApply(value -> new Entry<>((T) value, false))
+                .exceptionallyCompose(failure -> {
+                    Object fallback = SupabaseGuard.isUnavailable(failure)
+                            ? lastGood.getIfPresent(new Slot(key.kind(), key.id())) : null;
+                    if (fallback == null) {
+                        return CompletableFuture.failedFuture(failure);
+                    }
+                    meterRegistry.counter("catalog.stale.served", "kind", key.kind()).increment();
+                    return CompletableFuture.completedFuture(new Entry<>((T) fallback, true));
+                });
+    }
+}
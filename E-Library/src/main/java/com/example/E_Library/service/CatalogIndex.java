@@ -0,0 +1,21 @@
+package com.example.E_Library.service;
+
+import java.util.List;
+
+import com.example.E_Library.model.Book;
+
+/**
+ * An in-memory structure derived from the book catalog. CatalogIndexer
+ * loads every implementation from one Supabase read at startup and then
+ * forwards each book write, so none of them query Supabase themselves.
+ */
+public interface CatalogIndex {
+
+    // Replaces the whole contents
+    void load(List<Book> books);
+
+    // Adds a new book or replaces the indexed copy of an existing one
+    void index(Book book);
+
+    void remove(Integer bookId);
+}
@@ -0,0 +1,119 @@
+package com.example.E_Library.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.repository.BookRepository;
+
+/**
+ * Loads the catalog into every CatalogIndex once the application is ready
+ * and keeps them current from the book write paths in SupabaseService.
+ * Until the first load succeeds isReady() is false and callers fall back to
+ * Supabase; a reload is then retried at most once per app.search.retry-seconds.
+ *
+ * A load replaces the indexes with a snapshot read before it started, so
+ * writes forwarded while it runs are recorded and replayed on top of it.
+ */
+@Service
+public class CatalogIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexer.class);
+
+    private final BookRepository bookRepository;
+    private final List<CatalogIndex> indexes;
+    private final long retryMillis;
+
+    private volatile boolean ready;
+    private volatile long lastLoadAttempt;
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    // Writes forwarded since the running load read the catalog; null when no load is running
+    private final Object writes = new Object();
+    private List<Consumer<CatalogIndex>> writesDuringLoad;
+
+    public CatalogIndexer(BookRepository bookRepository,
+                          List<CatalogIndex> indexes,
+                          @Value("${app.search.retry-seconds:60}") long retrySeconds) {
+        this.bookRepository = bookRepository;
+        this.indexes = indexes;
+        this.retryMillis = TimeUnit.SECONDS.toMillis(retrySeconds);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        loadInBackground();
+    }
+
+    public boolean isReady() {
+        if (!ready && System.currentTimeMillis() - lastLoadAttempt > retryMillis) {
+            loadInBackground();
+        }
+        return ready;
+    }
+
+    private void loadInBackground() {
+        if (loading.compareAndSet(false, true)) {
+            lastLoadAttempt = System.currentTimeMillis();
+            CompletableFuture.runAsync(this::reload).whenComplete((ignored, error) -> loading.set(false));
+        }
+    }
+
+    public void reload() {
+        synchronized (writes) {
+            writesDuringLoad = new ArrayList<>();
+        }
+        try {
+            List<Book> books = bookRepository.findAll();
+            for (CatalogIndex index : indexes) {
+                index.load(books);
+            }
+            int replayed;
+            synchronized (writes) {
+                replayed = writesDuringLoad.size();
+                for (Consumer<CatalogIndex> write : writesDuringLoad) {
+                    indexes.forEach(write);
+                }
+            }
+            ready = true;
+            logger.info("Catalog indexes loaded with {} books ({} writes replayed)", books.size(), replayed);
+        } catch (Exception e) {
+            logger.warn("Could not load the catalog indexes, searches go to Supabase for now: {}", e.getMessage());
+        } finally {
+            synchronized (writes) {
+                writesDuringLoad = null;
+            }
+        }
+    }
+
+    public void index(Book book) {
+        if (book == null || book.getBook_id() == null) {
+            return;
+        }
+        apply(index -> index.index(book));
+    }
+
+    public void remove(Integer bookId) {
+        apply(index -> index.remove(bookId));
+    }
+
+    // Applied and recorded under one lock, so a replay never runs ahead of or behind a live write
+    private void apply(Consumer<CatalogIndex> write) {
+        synchronized (writes) {
+            indexes.forEach(write);
+            if (writesDuringLoad != null) {
+                writesDuringLoad.add(write);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.E_Library.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.exceptions.ResourceNotFoundException;
+import com.example.E_Library.exceptions.UploadConflictException;
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.UploadStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Resumable uploads for book files too large for one multipart request. A
+ * client creates an upload, appends chunks at the offset the server reports
+ * and finalizes it with the book's metadata. Chunks stream from the request
+ * body straight into a file under the upload store, so nothing is buffered in
+ * memory or by the container, and the SHA-256 of the whole file is kept up to
+ * date chunk by chunk for the store's content address.
+ *
+ * A chunk is all or nothing: if its checksum does not match or the connection
+ * drops halfway, the file is cut back to where the chunk started and the
+ * client re-sends it from the offset in GET /books/uploads/{id}. Uploads live
+ * in memory, so they do not survive a restart; idle ones expire after the TTL
+ * and their partial files are deleted.
+ */
+@Service
+public class ChunkedUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final String CHECKSUM_ALGORITHM = "sha256";
+
+    private static final class Session {
+        final String id;
+        final String owner;
+        final Path file;
+        final Long size;
+        final String sha256;
+        final ReentrantLock lock = new ReentrantLock();
+        MessageDigest digest;
+        volatile long offset;
+        // Set once the file is in the store, so a failed addBook can be retried
+        UploadStore.StoredFile stored;
+        // Set once the book has been added with the stored file
+        volatile boolean completed;
+
+        Session(String id, String owner, Path file, Long size, String sha256) {
+            this.id = id;
+            this.owner = owner;
+            this.file = file;
+            this.size = size;
+            this.sha256 = sha256;
+            this.digest = newDigest();
+        }
+
+        UploadStatus status() {
+            return new UploadStatus(id, offset, size);
+        }
+    }
+
+    private final UploadStore uploadStore;
+    private final SupabaseService supabaseService;
+    private final Cache<String, Session> sessions;
+    private final long maxBytes;
+    private final Counter bytesReceived;
+    private final Counter chunksRejected;
+
+    public ChunkedUploadService(UploadStore uploadStore,
+                                SupabaseService supabaseService,
+                                @Value("${app.uploads.chunked.max-bytes:2147483648}") long maxBytes,
+                                @Value("${app.uploads.chunked.ttl-hours:24}") long ttlHours,
+                                MeterRegistry meterRegistry) {
+        this.uploadStore = uploadStore;
+        this.supabaseService = supabaseService;
+        this.maxBytes = maxBytes;
+        // The scheduler makes idle uploads expire (and their files go) without waiting for other traffic
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofHours(ttlHours))
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((String id, Session session, RemovalCause cause) -> discard(session, cause))
+                .build();
+
+        Gauge.builder("upload.chunked.sessions", sessions, Cache::estimatedSize).register(meterRegistry);
+        this.bytesReceived = Counter.builder("upload.chunked.bytes").baseUnit("bytes").register(meterRegistry);
+        this.chunksRejected = Counter.builder("upload.chunked.rejected")
+                .description("Chunks rolled back after a checksum mismatch or a dropped connection")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts an upload. size and sha256 (hex) are optional; when given, the
+     * upload cannot grow past size and finalizing checks both.
+     */
+    public UploadStatus create(String owner, Long size, String sha256) throws IOException {
+        if (size != null && (size < 0 || size > maxBytes)) {
+            throw new IllegalArgumentException("Upload size must be between 0 and " + maxBytes + " bytes");
+        }
+        if (sha256 != null && !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("sha256 must be 64 hex characters");
+        }
+        String id = UUID.randomUUID().toString();
+        Session session = new Session(id, owner, uploadStore.createIncomingFile("chunked-"), size,
+                sha256 != null ? sha256.toLowerCase() : null);
+        sessions.put(id, session);
+        logger.info("Started chunked upload {} for {} (size: {})", id, owner, size);
+        return session.status();
+    }
+
+    public UploadStatus status(String owner, String id) {
+        return session(owner, id).status();
+    }
+
+    /**
+     * Appends body at offset, which must equal the bytes received so far.
+     * checksum is an optional "sha256 <base64 digest>" of this chunk.
+     */
+    public UploadStatus append(String owner, String id, long offset, String checksum, InputStream body)
+            throws IOException {
+        Session session = session(owner, id);
+        byte[] expected = parseChecksum(checksum);
+        if (!session.lock.tryLock()) {
+            throw new UploadConflictException("Another chunk is being written to this upload", session.offset);
+        }
+        try {
+            if (session.stored != null) {
+                throw new UploadConflictException("Upload is already finalized", session.offset);
+            }
+            if (offset != session.offset) {
+                throw new UploadConflictException("Chunk starts at " + offset + " but the upload is at "
+                        + session.offset, session.offset);
+            }
+            long limit = session.size != null ? session.size : maxBytes;
+            MessageDigest total = copy(session.digest);
+            MessageDigest chunk = expected != null ? newDigest() : null;
+            long written = 0;
+            try (FileChannel channel = FileChannel.open(session.file, StandardOpenOption.WRITE)) {
+                channel.position(offset);
+                try {
+                    byte[] buffer = new byte[BookFileFetcher.BUFFER_SIZE];
+                    int length;
+                    while ((length = body.read(buffer)) >= 0) {
+                        written += length;
+                        if (offset + written > limit) {
+                            throw new IllegalArgumentException("Upload exceeds " + limit + " bytes");
+                        }
+                        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+                        while (bytes.hasRemaining()) {
+                            channel.write(bytes);
+                        }
+                        total.update(buffer, 0, length);
+                        if (chunk != null) {
+                            chunk.update(buffer, 0, length);
+                        }
+                    }
+                    if (chunk != null && !MessageDigest.isEqual(expected, chunk.digest())) {
+                        throw new IllegalArgumentException("Chunk checksum does not match; re-send it from offset "
+                                + offset);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Drop the partial chunk so the upload is back where the client will resume
+                    channel.truncate(offset);
+                    chunksRejected.increment();
+                    throw e;
+                }
+            }
+            session.digest = total;
+            session.offset = offset + written;
+            bytesReceived.increment(written);
+            return session.status();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the complete file into the upload store and adds the book with
+     * it as file_url, returning what {@link SupabaseService#addBook} returns.
+     */
+    public String complete(String owner, String id, Book book) throws IOException {
+        Session session = session(owner, id);
+        if (!session.lock.tryLock()) {
+            throw new UploadConflictException("A chunk is still being written to this upload", session.offset);
+        }
+        try {
+            if (session.stored == null) {
+                if (session.size != null && session.offset != session.size) {
+                    throw new UploadConflictException("Upload has " + session.offset + " of " + session.size
+                            + " bytes", session.offset);
+                }
+                String sha256 = HexFormat.of().formatHex(copy(session.digest).digest());
+                if (session.sha256 != null && !session.sha256.equals(sha256)) {
+                    throw new IllegalArgumentException("File checksum does not match the one declared for upload "
+                            + id);
+                }
+                session.stored = uploadStore.adopt(session.file, sha256, session.offset);
+                logger.info("Chunked upload {} stored as {} (already stored: {})", id, session.stored.url(),
+                        session.stored.deduplicated());
+            }
+            book.setFile_url(session.stored.url());
+            String created = supabaseService.addBook(book);
+            session.completed = true;
+            sessions.invalidate(id);
+            return created;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the upload and its file. Refused while a chunk is being written
+     * or the upload is being completed: complete may already have moved the
+     * file into the store without recording it in the session, and removing
+     * the session then would leave the store's pin on it forever.
+     */
+    public void abort(String owner, String id) {
+        Session session = session(owner, id);
+        if (!session.lock.tryLock()) {
+            throw new UploadConflictException("The upload is being written to or completed", session.offset);
+        }
+        try {
+            sessions.invalidate(id);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    // Uploads are private to the admin who started them; anyone else gets the same 404 as for an unknown id
+    private Session session(String owner, String id) {
+        Session session = sessions.getIfPresent(id);
+        if (session == null || !session.owner.equals(owner)) {
+            throw new ResourceNotFoundException("Upload not found: " + id);
+        }
+        return session;
+    }
+
+    private void discard(Session session, RemovalCause cause) {
+        if (session == null) {
+            return;
+        }
+        if (session.stored != null) {
+            uploadStore.release(session.stored);
+            // Stored but aborted or expired before a book was added: nothing else will ever delete it
+            if (!session.completed) {
+                supabaseService.deleteUnreferencedFile(session.stored.url());
+            }
+        }
+        try {
+            Files.deleteIfExists(session.file);
+        } catch (IOException e) {
+            logger.warn("Could not delete partial upload {}: {}", session.file, e.getMessage());
+        }
+        if (cause == RemovalCause.EXPIRED) {
+            logger.info("Chunked upload {} expired at {} bytes", session.id, session.offset);
+        }
+    }
+
+    private static byte[] parseChecksum(String checksum) {
+        if (checksum == null) {
+            return null;
+        }
+        String[] parts = checksum.trim().split("\\s+");
+        if (parts.length != 2 || !parts[0].equalsIgnoreCase(CHECKSUM_ALGORITHM)) {
+            throw new IllegalArgumentException("Upload-Checksum must be \"sha256 <base64 digest>\"");
+        }
+        try {
+            return Base64.getDecoder().decode(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Upload-Checksum digest is not valid base64");
+        }
+    }
+
+    private static MessageDigest copy(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be copied", e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -20,35 +20,53 @@ public class JwtService implements UserDetailsService {
 
     private final SupabaseService supabaseService;
     private final JwtUtil jwtUtil;
+    private final UserDetailsCache userDetailsCache;
+    private final TokenVersionService tokenVersionService;
 
-    public JwtService(SupabaseService supabaseService, JwtUtil jwtUtil) {
+    public JwtService(SupabaseService supabaseService, JwtUtil jwtUtil, UserDetailsCache userDetailsCache,
+                      TokenVersionService tokenVersionService) {
         this.supabaseService = supabaseService;
         this.jwtUtil = jwtUtil;
+        this.userDetailsCache = userDetailsCache;
+        this.tokenVersionService = tokenVersionService;
     }
 
     public JwtResponse createJwtToken(JwtRequest jwtRequest) throws Exception {
         String userName = jwtRequest.getUserName();
 
-        final UserDetails userDetails = loadUserByUsername(userName);
-        String newGeneratedToken = jwtUtil.generateToken(userDetails);
-
         User user = supabaseService.fetchUserByUsername(userName);
         if (user == null) {
             throw new ResourceNotFoundException("User not found with username: " + userName);
         }
 
+        return createJwtToken(user);
+    }
+
+    /**
+     * Mints the token from an already authenticated user row, without another
+     * Supabase lookup.
+     */
+    public JwtResponse createJwtToken(User user) {
+        String userName = user.getUsername();
+
+        // user_id, is_admin and roles travel as signed claims so requests can be authenticated statelessly
+        String newGeneratedToken = jwtUtil.generateToken(user, getAuthorities(user),
+                tokenVersionService.currentVersion(userName));
+
         return new JwtResponse(user, newGeneratedToken);
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return userDetailsCache.get(username, this::fetchUserDetails);
+    }
+
+    private UserDetails fetchUserDetails(String username) {
         User user = supabaseService.fetchUserByUsername(username);
         if (user == null) {
             throw new AuthenticationFailedException("Invalid username or password");
         }
 
-                 
-
         return new org.springframework.security.core.userdetails.User(
                 user.getUsername(),
                 user.getPassword(),
@@ -0,0 +1,214 @@
+package com.example.E_Library.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.configuration.WorkerThreads;
+import com.example.E_Library.exceptions.ServiceBusyException;
+import com.example.E_Library.utils.Futures;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated, bounded pool so a burst
+ * of logins cannot occupy every Tomcat thread. When the queue is full callers
+ * get a ServiceBusyException (503 + Retry-After) instead of queueing forever.
+ * Results come back as futures, so the request thread is not held while the
+ * hash is computed.
+ */
+@Service
+public class PasswordHashingService {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitMs;
+    private final long retryAfterSeconds;
+
+    private final boolean adaptive;
+    private final long targetMillis;
+    private final int minCost;
+    private final int maxCost;
+
+    private volatile int cost;
+    // Until the cost is calibrated, minCost may be below what stored hashes already use
+    private volatile boolean calibrated;
+    private volatile BCryptPasswordEncoder encoder;
+
+    private final Timer waitTimer;
+    private final Timer encodeTimer;
+    private final Timer verifyTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingService(@Value("${app.bcrypt.pool-size:0}") int poolSize,
+                                  @Value("${app.bcrypt.queue-capacity:64}") int queueCapacity,
+                                  @Value("${app.bcrypt.max-wait-ms:2000}") long maxWaitMs,
+                                  @Value("${app.bcrypt.retry-after-seconds:1}") long retryAfterSeconds,
+                                  @Value("${app.bcrypt.adaptive:true}") boolean adaptive,
+                                  @Value("${app.bcrypt.target-millis:250}") long targetMillis,
+                                  @Value("${app.bcrypt.min-cost:10}") int minCost,
+                                  @Value("${app.bcrypt.max-cost:14}") int maxCost,
+                                  WorkerThreads workerThreads,
+                                  MeterRegistry meterRegistry) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        // CPU-bound: stays on platform threads in virtual-thread mode too
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                workerThreads.platformThreads("bcrypt"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxWaitMs = maxWaitMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.adaptive = adaptive;
+        this.targetMillis = targetMillis;
+        this.minCost = minCost;
+        this.maxCost = maxCost;
+        this.cost = minCost;
+        this.encoder = new BCryptPasswordEncoder(minCost);
+        this.calibrated = !adaptive;
+
+        Gauge.builder("password.hashing.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("BCrypt tasks waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.cost", this, PasswordHashingService::currentCost)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("password.hashing.wait").register(meterRegistry);
+        this.encodeTimer = Timer.builder("password.hashing.time").tag("operation", "encode").register(meterRegistry);
+        this.verifyTimer = Timer.builder("password.hashing.time").tag("operation", "verify").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hashing.rejected").register(meterRegistry);
+    }
+
+    public CompletableFuture<String> encodeAsync(String rawPassword) {
+        return submit(() -> encodeTimer.record(() -> encoder.encode(rawPassword)));
+    }
+
+    public CompletableFuture<Boolean> matchesAsync(String rawPassword, String encodedPassword) {
+        return submit(() -> verifyTimer.record(() -> encoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * True when the stored hash was produced with a lower cost factor than the
+     * current one, so it should be re-hashed after a successful login. Never
+     * downgrades a hash, and says no until the cost has been calibrated.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        return calibrated && costOf(encodedPassword) < currentCost();
+    }
+
+    /**
+     * Re-hashes in the background; skipped silently if the pool is saturated,
+     * since the next login will try again.
+     */
+    public void rehashAsync(String rawPassword, Consumer<String> onRehashed) {
+        try {
+            executor.execute(() -> {
+                try {
+                    onRehashed.accept(encodeTimer.record(() -> encoder.encode(rawPassword)));
+                } catch (Exception e) {
+                    logger.warn("Password rehash failed: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Skipping password rehash, BCrypt pool is saturated");
+        }
+    }
+
+    public int currentCost() {
+        return cost;
+    }
+
+    // Picks the highest cost whose hash time stays within the latency budget
+    @EventListener(ApplicationReadyEvent.class)
+    public void calibrateCost() {
+        if (!adaptive) {
+            return;
+        }
+        executor.execute(() -> {
+            int calibratedCost = minCost;
+            // each +1 doubles the work, so stop before the next step would exceed the budget
+            while (calibratedCost < maxCost && timeHash(calibratedCost) * 2 <= targetMillis) {
+                calibratedCost++;
+            }
+            if (calibratedCost != cost) {
+                logger.info("BCrypt cost factor changed from {} to {} (target {} ms)", cost, calibratedCost,
+                        targetMillis);
+                encoder = new BCryptPasswordEncoder(calibratedCost);
+                cost = calibratedCost;
+            }
+            calibrated = true;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    result.complete(task.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e instanceof RuntimeException
+                            ? e : new IllegalStateException("Password hashing failed", e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(new ServiceBusyException(
+                    "Too many login attempts in progress, please retry shortly", retryAfterSeconds));
+        }
+
+        // Same deadline as before, now without a thread waiting for it
+        return Futures.mapFailure(result.orTimeout(maxWaitMs, TimeUnit.MILLISECONDS), e -> {
+            if (!(e instanceof TimeoutException)) {
+                return e;
+            }
+            future.cancel(true);
+            rejectedCounter.increment();
+            return new ServiceBusyException("Password check timed out, please retry shortly", retryAfterSeconds);
+        });
+    }
+
+    private long timeHash(int cost) {
+        long start = System.nanoTime();
+        new BCryptPasswordEncoder(cost).encode("calibration");
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    // "$2a$10$..." -> 10
+    private static int costOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.E_Library.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.Suggestion;
+import com.example.E_Library.utils.TextAnalyzer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Completions for /books/suggest from book titles and author names, best
+ * first by popularity. Every title and author is stored under its normalised
+ * text and under each later word start ("marquez" finds "Gabriel Garcia
+ * Marquez"), in one sorted key array, so a prefix is a binary-searched range.
+ * One- and two-character prefixes match too much of the array to scan per
+ * keystroke, so their top completions are kept precomputed.
+ *
+ * Popularity is one point per book plus its views and downloads. Accesses
+ * are counted lock-free and folded into the weights at most once per
+ * app.search.suggest-refresh-seconds; they are not persisted.
+ */
+@Service
+public class SuggestionIndex implements CatalogIndex {
+
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final String TITLE = "title";
+    private static final String AUTHOR = "author";
+    private static final int CACHED_PREFIX_LENGTH = 2;
+    private static final int MAX_WORD_STARTS = 6;
+
+    // A distinct title or author name and the books that share it
+    private static final class Entry {
+        final String kind;
+        final String text;
+        final String[] keys;
+        // Sorted in [0, bookCount); usually a single book
+        int[] bookIds = new int[1];
+        int bookCount;
+        long weight;
+
+        Entry(String kind, String text, String[] keys) {
+            this.kind = kind;
+            this.text = text;
+            this.keys = keys;
+        }
+
+        void addBook(int bookId) {
+            int at = Arrays.binarySearch(bookIds, 0, bookCount, bookId);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (bookCount == bookIds.length) {
+                bookIds = Arrays.copyOf(bookIds, bookCount * 2);
+            }
+            System.arraycopy(bookIds, at, bookIds, at + 1, bookCount - at);
+            bookIds[at] = bookId;
+            bookCount++;
+        }
+
+        void removeBook(int bookId) {
+            int at = Arrays.binarySearch(bookIds, 0, bookCount, bookId);
+            if (at >= 0) {
+                System.arraycopy(bookIds, at + 1, bookIds, at, bookCount - at - 1);
+                bookCount--;
+            }
+        }
+    }
+
+    private record KeyRef(String key, Entry entry) implements Comparable<KeyRef> {
+        @Override
+        public int compareTo(KeyRef other) {
+            return key.compareTo(other.key);
+        }
+    }
+
+    private static final Comparator<Entry> BEST_FIRST = Comparator.comparingLong((Entry entry) -> entry.weight)
+            .reversed().thenComparing(entry -> entry.text);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private String[] keys = new String[0];
+    private Entry[] keyEntries = new Entry[0];
+    private int size;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Integer, Entry[]> bookEntries = new HashMap<>();
+    private final Map<Integer, Long> popularity = new HashMap<>();
+    private final Map<String, Entry[]> cachedTops = new HashMap<>();
+
+    private final Map<Integer, LongAdder> pendingAccesses = new ConcurrentHashMap<>();
+    private final long refreshMillis;
+    private volatile long lastRefresh = System.currentTimeMillis();
+    private final Timer queryTimer;
+
+    public SuggestionIndex(MeterRegistry meterRegistry,
+                           @Value("${app.search.suggest-refresh-seconds:30}") long refreshSeconds) {
+        this.refreshMillis = TimeUnit.SECONDS.toMillis(refreshSeconds);
+        this.queryTimer = Timer.builder("search.suggest.query").register(meterRegistry);
+        Gauge.builder("search.suggest.keys", this, index -> index.keyCount()).register(meterRegistry);
+    }
+
+    @Override
+    public void load(List<Book> books) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            bookEntries.clear();
+            for (Book book : books) {
+                attach(book, false);
+            }
+            List<KeyRef> refs = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                for (String key : entry.keys) {
+                    refs.add(new KeyRef(key, entry));
+                }
+            }
+            KeyRef[] sorted = refs.toArray(new KeyRef[0]);
+            Arrays.parallelSort(sorted);
+            keys = new String[sorted.length];
+            keyEntries = new Entry[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                keys[i] = sorted[i].key();
+                keyEntries[i] = sorted[i].entry();
+            }
+            size = sorted.length;
+            recomputeAllCachedTops();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        lock.writeLock().lock();
+        try {
+            detach(book.getBook_id());
+            for (Entry entry : attach(book, true)) {
+                if (entry != null) {
+                    recomputeCachedTops(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Integer bookId) {
+        lock.writeLock().lock();
+        try {
+            detach(bookId);
+            popularity.remove(bookId);
+            pendingAccesses.remove(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A view or download of the book; cheap enough to call on every request
+    public void recordAccess(Integer bookId) {
+        pendingAccesses.computeIfAbsent(bookId, id -> new LongAdder()).increment();
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        long start = System.nanoTime();
+        refreshPopularityIfDue();
+        String key = String.join(" ", TextAnalyzer.tokenize(prefix));
+        int count = Math.min(limit, MAX_SUGGESTIONS);
+        List<Suggestion> suggestions = new ArrayList<>(count);
+        if (key.isEmpty() || count < 1) {
+            return suggestions;
+        }
+        lock.readLock().lock();
+        try {
+            Entry[] top = key.length() <= CACHED_PREFIX_LENGTH
+                    ? cachedTops.getOrDefault(key, new Entry[0])
+                    : topInRange(lowerBound(key), lowerBound(key + Character.MAX_VALUE));
+            for (int i = 0; i < top.length && i < count; i++) {
+                Entry entry = top[i];
+                suggestions.add(new Suggestion(entry.text, entry.kind,
+                        TITLE.equals(entry.kind) ? entry.bookIds[0] : null));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int keyCount() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void refreshPopularityIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastRefresh < refreshMillis || pendingAccesses.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (now - lastRefresh < refreshMillis) {
+                return;
+            }
+            lastRefresh = now;
+            for (Integer bookId : List.copyOf(pendingAccesses.keySet())) {
+                long accesses = pendingAccesses.remove(bookId).sum();
+                Entry[] owned = bookEntries.get(bookId);
+                if (owned == null) {
+                    continue;
+                }
+                popularity.merge(bookId, accesses, Long::sum);
+                for (Entry entry : owned) {
+                    if (entry != null) {
+                        entry.weight += accesses;
+                    }
+                }
+            }
+            recomputeAllCachedTops();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Callers hold the write lock. Adds the book to its title and author
+     * entries; load() passes insertKeys=false and sorts all keys at the end.
+     */
+    private Entry[] attach(Book book, boolean insertKeys) {
+        Entry[] owned = {
+                attach(TITLE, book.getTitle(), book.getBook_id(), insertKeys),
+                attach(AUTHOR, book.getAuthor(), book.getBook_id(), insertKeys)};
+        bookEntries.put(book.getBook_id(), owned);
+        return owned;
+    }
+
+    private Entry attach(String kind, String text, Integer bookId, boolean insertKeys) {
+        List<String> words = TextAnalyzer.tokenize(text);
+        if (words.isEmpty()) {
+            return null;
+        }
+        String fullKey = String.join(" ", words);
+        Entry entry = entries.get(entryKey(kind, fullKey));
+        if (entry == null) {
+            // Suffixes of the full key starting at each word
+            String[] entryKeys = new String[Math.min(words.size(), MAX_WORD_STARTS)];
+            int start = 0;
+            for (int i = 0; i < entryKeys.length; i++) {
+                entryKeys[i] = fullKey.substring(start);
+                start += words.get(i).length() + 1;
+            }
+            entry = new Entry(kind, text.trim(), entryKeys);
+            entries.put(entryKey(kind, fullKey), entry);
+            if (insertKeys) {
+                for (String key : entryKeys) {
+                    insertKey(key, entry);
+                }
+            }
+        }
+        entry.addBook(bookId);
+        entry.weight += 1 + popularity.getOrDefault(bookId, 0L);
+        return entry;
+    }
+
+    private static String entryKey(String kind, String fullKey) {
+        return kind + ":" + fullKey;
+    }
+
+    private void detach(Integer bookId) {
+        Entry[] owned = bookEntries.remove(bookId);
+        if (owned == null) {
+            return;
+        }
+        for (Entry entry : owned) {
+            if (entry == null) {
+                continue;
+            }
+            entry.removeBook(bookId);
+            entry.weight -= 1 + popularity.getOrDefault(bookId, 0L);
+            if (entry.bookCount == 0) {
+                // keys[0] is the full key the entry was stored under
+                entries.remove(entryKey(entry.kind, entry.keys[0]), entry);
+                for (String key : entry.keys) {
+                    removeKey(key, entry);
+                }
+            }
+            recomputeCachedTops(entry);
+        }
+    }
+
+    private void insertKey(String key, Entry entry) {
+        int at = lowerBound(key);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(16, size * 2));
+            keyEntries = Arrays.copyOf(keyEntries, keys.length);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(keyEntries, at, keyEntries, at + 1, size - at);
+        keys[at] = key;
+        keyEntries[at] = entry;
+        size++;
+    }
+
+    private void removeKey(String key, Entry entry) {
+        for (int i = lowerBound(key); i < size && keys[i].equals(key); i++) {
+            if (keyEntries[i] == entry) {
+                System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                System.arraycopy(keyEntries, i + 1, keyEntries, i, size - i - 1);
+                size--;
+                keys[size] = null;
+                keyEntries[size] = null;
+                return;
+            }
+        }
+    }
+
+    // First position whose key is >= the given one
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Best MAX_SUGGESTIONS distinct entries among positions [from, to)
+    private Entry[] topInRange(int from, int to) {
+        Entry[] top = new Entry[MAX_SUGGESTIONS];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            Entry entry = keyEntries[i];
+            if (count == MAX_SUGGESTIONS && BEST_FIRST.compare(entry, top[count - 1]) >= 0) {
+                continue;
+            }
+            boolean seen = false;
+            for (int j = 0; j < count && !seen; j++) {
+                seen = top[j] == entry;
+            }
+            if (seen) {
+                continue;
+            }
+            int at = count < MAX_SUGGESTIONS ? count++ : count - 1;
+            while (at > 0 && BEST_FIRST.compare(entry, top[at - 1]) < 0) {
+                top[at] = top[at - 1];
+                at--;
+            }
+            top[at] = entry;
+        }
+        return Arrays.copyOf(top, count);
+    }
+
+    private void recomputeCachedTops(Entry entry) {
+        for (String key : entry.keys) {
+            for (int length = 1; length <= Math.min(CACHED_PREFIX_LENGTH, key.length()); length++) {
+                String prefix = key.substring(0, length);
+                Entry[] top = topInRange(lowerBound(prefix), lowerBound(prefix + Character.MAX_VALUE));
+                if (top.length == 0) {
+                    cachedTops.remove(prefix);
+                } else {
+                    cachedTops.put(prefix, top);
+                }
+            }
+        }
+    }
+
+    // Keys sharing a short prefix are contiguous, so one pass per length covers every prefix
+    private void recomputeAllCachedTops() {
+        cachedTops.clear();
+        for (int length = 1; length <= CACHED_PREFIX_LENGTH; length++) {
+            int i = 0;
+            while (i < size) {
+                if (keys[i].length() < length) {
+                    i++;
+                    continue;
+                }
+                String prefix = keys[i].substring(0, length);
+                int end = lowerBound(prefix + Character.MAX_VALUE);
+                cachedTops.put(prefix, topInRange(i, end));
+                i = end;
+            }
+        }
+    }
+}
@@ -1,64 +1,93 @@
 package com.example.E_Library.service;
 
+import com.example.E_Library.configuration.WorkerThreads;
 import com.example.E_Library.exceptions.*;
+import com.example.E_Library.model.AuthenticatedUser;
 import com.example.E_Library.model.Book;
+import com.example.E_Library.model.BookPage;
 import com.example.E_Library.model.BookCategory;
+import com.example.E_Library.model.Suggestion;
 import com.example.E_Library.model.User;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.E_Library.repository.BookRepository;
+import com.example.E_Library.repository.CategoryRepository;
+import com.example.E_Library.repository.UserRepository;
+import com.example.E_Library.utils.Futures;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
-
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
-@Service
-public class SupabaseService {
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 
-    // public SupabaseService() {
-    // this.restTemplate = new RestTemplate();
-    // this.restTemplate.setRequestFactory(new
-    // HttpComponentsClientHttpRequestFactory());
-    // }
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-    @Value("${PROJECT_URL}")
-    private String projectUrl;
-
-    @Value("${SECRET_KEY}")
-    private String secretKey;
-
-    @Value("${app.download.path:${java.io.tmpdir}/downloads}")
-    private String downloadPath;
-    
-    private HttpHeaders getHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("apikey", secretKey);
-        headers.set("Authorization", "Bearer " + secretKey);
-        return headers;
+@Service
+public class SupabaseService {
+    private static final Logger logger = LoggerFactory.getLogger(SupabaseService.class);
+
+    private final BookRepository bookRepository;
+    private final CategoryRepository categoryRepository;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final CatalogCache catalogCache;
+    private final BookSearchIndex searchIndex;
+    private final CatalogIndexer catalogIndexer;
+    private final SuggestionIndex suggestionIndex;
+    private final UploadStore uploadStore;
+    // Index updates and file cleanup after writes: they take locks and touch disk, so not on the I/O reactor,
+    // and not on applicationTaskExecutor either, where they could wait behind other async work
+    private final ThreadPoolExecutor writeFollowUpExecutor;
+
+    public SupabaseService(BookRepository bookRepository,
+                           CategoryRepository categoryRepository,
+                           UserRepository userRepository,
+                           ObjectMapper objectMapper,
+                           BookSearchIndex searchIndex,
+                           CatalogIndexer catalogIndexer,
+                           SuggestionIndex suggestionIndex,
+                           UploadStore uploadStore,
+                           WorkerThreads workerThreads,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.books.write-follow-up-threads:2}") int writeFollowUpThreads,
+                           @Value("${app.cache.catalog.ttl-seconds:300}") long catalogTtlSeconds,
+                           @Value("${app.cache.catalog.refresh-seconds:30}") long catalogRefreshSeconds,
+                           @Value("${app.cache.catalog.stale-ttl-hours:24}") long catalogStaleTtlHours,
+                           @Value("${app.cache.catalog.max-size:1000}") long catalogMaxSize) {
+        this.bookRepository = bookRepository;
+        this.categoryRepository = categoryRepository;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.searchIndex = searchIndex;
+        this.catalogIndexer = catalogIndexer;
+        this.suggestionIndex = suggestionIndex;
+        this.uploadStore = uploadStore;
+        // Unbounded: a follow-up is owed for every write that reached Supabase and must not be refused.
+        // Writes are admin-only and each follow-up is short, so the queue stays small
+        this.writeFollowUpExecutor = new ThreadPoolExecutor(writeFollowUpThreads, writeFollowUpThreads,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                workerThreads.platformThreads("write-follow-up"));
+        Gauge.builder("books.write.follow-up.queue.depth", writeFollowUpExecutor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        this.catalogCache = new CatalogCache(Duration.ofSeconds(catalogTtlSeconds),
+                Duration.ofSeconds(catalogRefreshSeconds), Duration.ofHours(catalogStaleTtlHours), catalogMaxSize,
+                meterRegistry, this::loadCatalogEntry);
     }
 
     public Integer getUserId() {
@@ -67,6 +96,12 @@ public class SupabaseService {
             throw new RuntimeException("No authenticated user found");
         }
 
+        // Stateless tokens already carry user_id in the principal
+        if (auth.getPrincipal() instanceof AuthenticatedUser authenticatedUser
+                && authenticatedUser.getUserId() != null) {
+            return authenticatedUser.getUserId();
+        }
+
         String username = auth.getName(); // logged-in username
         User currentUser = fetchUserByUsername(username);
 
@@ -79,32 +114,11 @@ public class SupabaseService {
 
     //=====User Details for Jwt ====
     public User fetchUserByUsername(String username) {
-        String url = projectUrl + "/rest/v1/users?username=eq." + username;
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
-
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            String body = response.getBody();
-
-            JsonNode array = objectMapper.readTree(body);
-            if (array.isArray() && array.size() > 0) {
-                JsonNode node = array.get(0);
-
-                User user = new User();
-                user.setUser_id(node.get("user_id").asInt());
-                user.setUsername(node.get("username").asText());
-                user.setEmail(node.get("email").asText());
-                user.setPassword(node.get("password").asText());
-                user.setCreated_at(node.get("created_at").asText());
-                user.setUpdated_at(node.get("updated_at").asText());
-                user.setIs_admin(node.get("is_admin").asBoolean());
-
-                return user;
-            }
-            throw new ResourceNotFoundException("User not found with username: " + username);
-
+            return userRepository.findByUsername(username)
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found with username: " + username));
         }
-        catch (ResourceNotFoundException e) {
+        catch (ResourceNotFoundException | ServiceBusyException e) {
             throw e; // propagate as-is
         } catch (Exception e) {
             throw new RuntimeException("Error fetching user from Supabase", e);
@@ -113,24 +127,10 @@ public class SupabaseService {
     //=====user by email for login ====
     // Fetch by email
     public User fetchUserByEmail(String email) {
-        String url = projectUrl + "/rest/v1/users?email=eq." + email;
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
-
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            JsonNode array = objectMapper.readTree(response.getBody());
-            if (array.isArray() && array.size() > 0) {
-                JsonNode node = array.get(0);
-                User user = new User();
-                user.setUser_id(node.get("user_id").asInt());
-                user.setUsername(node.get("username").asText());
-                user.setEmail(node.get("email").asText());
-                user.setPassword(node.get("password").asText());
-                user.setIs_admin(node.get("is_admin").asBoolean());
-                return user;
-            }
-            throw new AuthenticationFailedException("Invalid email or password");
-        } catch (AuthenticationFailedException e) {
+            return userRepository.findByEmail(email)
+                    .orElseThrow(() -> new AuthenticationFailedException("Invalid email or password"));
+        } catch (AuthenticationFailedException | ServiceBusyException e) {
             throw e;
         }catch (Exception e) {
             throw new RuntimeException("Error fetching user by email", e);
@@ -139,40 +139,84 @@ public class SupabaseService {
 
     // Add new user
     public String addUser(Map<String, Object> userMap) {
-        String url = projectUrl + "/rest/v1/users";
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(userMap, getHeaders());
-
         try {
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            return response.getBody();
+            return userRepository.insert(userMap);
         } catch (HttpClientErrorException e) {
             throw new AuthenticationFailedException("Error registering user: " + e.getResponseBodyAsString());
     }
     }
 
 
+    // ===== CATALOG CACHE =====
+    private CompletableFuture<?> loadCatalogEntry(String kind, String id) {
+        switch (kind) {
+            case CatalogCache.BOOKS:
+                return bookRepository.findAllAsync();
+            case CatalogCache.BOOK:
+                return fetchBookById(id);
+            case CatalogCache.BOOKS_PAGE: {
+                String[] parts = id.split(":");
+                Integer cursor = parts[0].isEmpty() ? null : Integer.valueOf(parts[0]);
+                return bookRepository.findPageAsync(null, cursor, Integer.parseInt(parts[1]));
+            }
+            case CatalogCache.BOOKS_COUNT:
+                return bookRepository.countAsync(null);
+            case CatalogCache.CATEGORIES:
+                return categoryRepository.findAllAsync();
+            default:
+                throw new IllegalArgumentException("Unknown catalog entry: " + kind);
+        }
+    }
+
     // ===== BOOK CRUD =====
-    public String getAllBooks() {
-        String url = projectUrl + "/rest/v1/books";
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-        return response.getBody();
+    // Request handlers get futures that complete off the servlet thread once Supabase answers.
+    // Catalog reads may be stale copies while Supabase is unavailable (CatalogCache.Entry#stale).
+    public CompletableFuture<CatalogCache.Entry<List<Book>>> getAllBooks() {
+        return catalogCache.books();
     }
 
-    public String getBookById(String id) {
-        String url = projectUrl + "/rest/v1/books?book_id=eq." + id;
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
+    // null value when no book has this id; counts as a view for /books/suggest ranking
+    public CompletableFuture<CatalogCache.Entry<Book>> getBookById(String id) {
+        return catalogCache.book(id).thenApply(entry -> {
+            if (entry.value() != null) {
+                suggestionIndex.recordAccess(entry.value().getBook_id());
+            }
+            return entry;
+        });
+    }
+
+    private CompletableFuture<Book> fetchBookById(String id) {
+        return Futures.mapFailure(bookRepository.findByIdAsync(id).thenApply(book -> book.orElse(null)),
+                e -> e instanceof HttpClientErrorException ? new ResourceNotFoundException("Book not found with ID: " + id) : e);
+    }
+
+    // Blocking variant for ChunkedUploadService.complete, which holds its session lock across the insert
+    // and so runs it on the request thread
+    public String addBook(Book book) {
+        Map<String, Object> payload = bookPayload(book);
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            return response.getBody();
+            return booksAdded(bookRepository.insert(payload));
         } catch (HttpClientErrorException e) {
-            throw new ResourceNotFoundException("Book not found with ID: " + id);
+            throw new ResourceNotFoundException("Error adding book: " + e.getResponseBodyAsString());
         }
     }
 
-    public String addBook(Book book) {
-        String url = projectUrl + "/rest/v1/books";
+    public CompletableFuture<String> addBookAsync(Book book) {
+        // Built here, on the request thread, where the security context is
+        Map<String, Object> payload;
+        try {
+            payload = bookPayload(book);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return Futures.mapFailure(bookRepository.insertAsync(payload)
+                        .thenApplyAsync(this::booksAdded, writeFollowUpExecutor),
+                e -> e instanceof HttpClientErrorException clientError
+                        ? new ResourceNotFoundException("Error adding book: " + clientError.getResponseBodyAsString())
+                        : e);
+    }
 
+    private Map<String, Object> bookPayload(Book book) {
         Map<String, Object> payload = new HashMap<>();
         if (book.getTitle() != null)
             payload.put("title", book.getTitle());
@@ -192,14 +236,16 @@ public class SupabaseService {
             payload.put("uploaded_at", book.getUploaded_at());
         if (book.getCategory_id() != null)
             payload.put("category_id", book.getCategory_id());
+        return payload;
+    }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, getHeaders());
-
+    private String booksAdded(List<Book> created) {
+        catalogCache.invalidateBooks();
+        created.forEach(catalogIndexer::index);
         try {
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            return response.getBody();
-        } catch (HttpClientErrorException e) {
-            throw new ResourceNotFoundException("Error adding book: " + e.getResponseBodyAsString());
+            return objectMapper.writeValueAsString(created);
+        } catch (JsonProcessingException e) {
+            throw new SupabaseException("Invalid book returned by Supabase", e);
         }
     }
 
@@ -217,56 +263,77 @@ public class SupabaseService {
     // }
     // }
 
-    public String updateBook(String id, Map<String, Object> updates) {
+    public CompletableFuture<String> updateBook(String id, Map<String, Object> updates) {
         // Supabase needs the filter on book_id in the URL
-        String url = projectUrl + "/rest/v1/books?book_id=eq." + id;
+        CompletableFuture<String> response = bookRepository.updateAsync(id, updates).thenApplyAsync(updated -> {
+            catalogCache.invalidateBook(id);
+            updated.forEach(catalogIndexer::index);
+            try {
+                return objectMapper.writeValueAsString(updated);
+            } catch (JsonProcessingException e) {
+                throw new SupabaseException("Invalid book returned by Supabase", e);
+            }
+        }, writeFollowUpExecutor);
+        // Only Supabase rejecting the update is a 404; outages keep their 503/502 mappings
+        return Futures.mapFailure(response, e -> {
+            if (!(e instanceof HttpClientErrorException)) {
+                return e;
+            }
+            logger.error("Error updating book with ID {}", id, e);
+            return new ResourceNotFoundException("Error updating book with ID: " + id);
+        });
+    }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(updates, getHeaders());
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
-            return response.getBody();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new ResourceNotFoundException("Error updating book with ID: " + id);
-        }
+    public CompletableFuture<String> deleteBook(String id) {
+        CompletableFuture<String> response = bookRepository.findByIdAsync(id)
+                .thenCompose(book -> bookRepository.deleteAsync(id).thenComposeAsync(deleted -> {
+                    catalogCache.invalidateBook(id);
+                    catalogIndexer.remove(Integer.valueOf(id));
+                    String fileUrl = book.map(Book::getFile_url).orElse(null);
+                    return fileUrl != null
+                            ? deleteUnreferencedFile(fileUrl).thenApply(ignored -> deleted)
+                            : CompletableFuture.completedFuture(deleted);
+                }, writeFollowUpExecutor));
+        return Futures.mapFailure(response,
+                e -> e instanceof HttpClientErrorException ? new ResourceNotFoundException("Book not found with ID: " + id) : e);
     }
 
-    public String deleteBook(String id) {
-        String url = projectUrl + "/rest/v1/books?book_id=eq." + id;
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.DELETE, entity, String.class);
-            return response.getBody();
-        } catch (HttpClientErrorException e) {
-            throw new ResourceNotFoundException("Book not found with ID: " + id);
-        }
+    /**
+     * Deletes a stored upload once no book refers to it: after a book is
+     * deleted, or after an upload whose book was never added is released.
+     * Other books may share the file (uploads are deduplicated), in which case
+     * it stays. Never fails; a file that cannot be removed is logged.
+     */
+    public CompletableFuture<Void> deleteUnreferencedFile(String fileUrl) {
+        return uploadStore.deleteIfUnreferenced(fileUrl, () -> bookRepository.countAsync("file_url=eq." + fileUrl),
+                        writeFollowUpExecutor)
+                .handle((deleted, failure) -> {
+                    if (failure != null) {
+                        // The book is already gone; a leftover file only costs disk space
+                        logger.warn("Could not clean up stored file {}: {}", fileUrl, Futures.unwrap(failure).getMessage());
+                    } else if (deleted) {
+                        logger.info("Deleted stored file {}, no book refers to it any more", fileUrl);
+                    }
+                    return null;
+                });
     }
 
     // ===== CATEGORY CRUD =====
-    public String getAllCategories() {
-        String url = projectUrl + "/rest/v1/book_categories";
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-        return response.getBody();
+    public CompletableFuture<CatalogCache.Entry<List<BookCategory>>> getAllCategories() {
+        return catalogCache.categories();
     }
 
-    public String addCategory(BookCategory category) {
-        String url = projectUrl + "/rest/v1/book_categories";
-
+    public CompletableFuture<String> addCategory(BookCategory category) {
         Map<String, Object> payload = new HashMap<>();
         if (category.getCategory_id() != null)
             payload.put("category_id", category.getCategory_id());
         if (category.getCategory_name() != null)
             payload.put("category_name", category.getCategory_name());
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, getHeaders());
-
-        try {
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            return response.getBody();
-        } catch (HttpClientErrorException e) {
-            throw new ResourceNotFoundException("Error adding category: " + e.getResponseBodyAsString());
-        }
+        return Futures.mapFailure(categoryRepository.insertAsync(payload).thenApply(this::categoriesChanged),
+                e -> e instanceof HttpClientErrorException clientError
+                        ? new ResourceNotFoundException("Error adding category: " + clientError.getResponseBodyAsString())
+                        : e);
     }
 
     // public String updateCategory(String id, Map<String, Object> updates) {
@@ -282,105 +349,87 @@ public class SupabaseService {
     // }
     // }
 
-    public String updateCategory(String id, Map<String, Object> updates) {
-        String url = projectUrl + "/rest/v1/book_categories?category_id=eq." + id;
-
+    public CompletableFuture<String> updateCategory(String id, Map<String, Object> updates) {
         // Prevent accidental overwrite of category_id
         updates.remove("category_id");
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(updates, getHeaders());
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
-            return response.getBody();
-        } catch (HttpClientErrorException e) {
-            throw new ResourceNotFoundException("Category not found with ID: " + id);
-        }
+        return Futures.mapFailure(categoryRepository.updateAsync(id, updates).thenApply(this::categoriesChanged),
+                e -> e instanceof HttpClientErrorException ? new ResourceNotFoundException("Category not found with ID: " + id) : e);
     }
 
-    public String deleteCategory(String id) {
-        String url = projectUrl + "/rest/v1/book_categories?category_id=eq." + id;
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.DELETE, entity, String.class);
-            return response.getBody();
-        } catch (HttpClientErrorException e) {
-            throw new ResourceNotFoundException("Category not found with ID: " + id);
-        }
+    public CompletableFuture<String> deleteCategory(String id) {
+        return Futures.mapFailure(categoryRepository.deleteAsync(id).thenApply(this::categoriesChanged),
+                e -> e instanceof HttpClientErrorException ? new ResourceNotFoundException("Category not found with ID: " + id) : e);
     }
 
-    // search
-    public String searchBooks(String query) {
-        // Search in title or author
-        String url = projectUrl + "/rest/v1/books?or=(title.ilike.*" + query + "*,author.ilike.*" + query + "*)";
+    private String categoriesChanged(String response) {
+        catalogCache.invalidateCategories();
+        return response;
+    }
 
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
+    // search
+    public List<Book> searchBooks(String query, boolean fuzzy) {
+        if (catalogIndexer.isReady()) {
+            return searchIndex.search(query, 0, Integer.MAX_VALUE, fuzzy).items();
+        }
+        // Index not loaded yet: search in title or author on Supabase (substring only, fuzzy is ignored)
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            return response.getBody();
+            return bookRepository.findMatching(searchFilter(query));
         } catch (HttpClientErrorException e) {
             throw new ResourceNotFoundException("No books found for query: " + query);
         }
     }
 
-    // ===== DOWNLOAD MULTIPLE BOOKS =====
-    public String downloadMultiple(List<String> bookIds) {
-        try {
-            Path downloadDir = Paths.get(downloadPath);
-            if (!Files.exists(downloadDir)) {
-                Files.createDirectories(downloadDir);
-            }
-            String zipFileName = "books_" + UUID.randomUUID().toString() + ".zip";
-            Path zipFilePath = downloadDir.resolve(zipFileName);
-            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFilePath))) {
-                for (String bookId : bookIds) {
-                    try {
-                        String bookResponse = getBookById(bookId);
-                        JsonNode bookArray = objectMapper.readTree(bookResponse);
-                        if (bookArray.isArray() && bookArray.size() > 0) {
-                            JsonNode book = bookArray.get(0);
-                            String fileUrl = book.get("file_url").asText();
-                            String title = book.get("title").asText();
-                            String author = book.get("author").asText();
-                            String fileName = sanitizeFileName(title + "_" + author + ".pdf");
-                            downloadAndAddToZip(fileUrl, fileName, zipOut);
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error processing book ID " + bookId + ": " + e.getMessage());
-                    }
-                }
-            }
-            Map<String, String> response = new HashMap<>();
-            response.put("zipFilePath", zipFilePath.toString());
-            response.put("downloadUrl", "/downloads/" + zipFileName);
-            response.put("message", "Successfully created zip file with " + bookIds.size() + " books");
-            return objectMapper.writeValueAsString(response);
-        } catch (Exception e) {
-            throw new ResourceNotFoundException("Error creating zip file: " + e.getMessage());
+    // Completions for the search bar; none until the catalog indexes have loaded
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (!catalogIndexer.isReady()) {
+            return List.of();
         }
+        return suggestionIndex.suggest(prefix, limit);
+    }
+
+    // ===== KEYSET PAGINATION =====
+    // The page and the total are fetched concurrently; the page is stale if either part is
+    public CompletableFuture<CatalogCache.Entry<BookPage>> getBooksPage(Integer cursor, int limit, boolean includeTotal) {
+        CompletableFuture<CatalogCache.Entry<List<Book>>> items = catalogCache.booksPage(cursor, limit);
+        CompletableFuture<CatalogCache.Entry<Long>> total = includeTotal
+                ? catalogCache.booksCount() : CompletableFuture.completedFuture(new CatalogCache.Entry<>(null, false));
+        return items.thenCombine(total, (page, count) -> new CatalogCache.Entry<>(
+                new BookPage(page.value(), nextCursor(page.value(), limit), count.value()), page.stale() || count.stale()));
     }
 
-    private void downloadAndAddToZip(String fileUrl, String fileName, ZipOutputStream zipOut) throws IOException {
+    /**
+     * Search results are ranked, so the cursor here is an offset into the
+     * ranking rather than a book_id. Clients pass next_cursor back unchanged.
+     */
+    public BookPage searchBooksPage(String query, boolean fuzzy, Integer cursor, int limit, boolean includeTotal) {
+        int offset = cursor == null ? 0 : Math.max(cursor, 0);
+        if (catalogIndexer.isReady()) {
+            BookSearchIndex.Result result = searchIndex.search(query, offset, limit, fuzzy);
+            Integer next = offset + limit < result.total() ? offset + limit : null;
+            return new BookPage(result.items(), next, includeTotal ? (long) result.total() : null);
+        }
+        String filter = searchFilter(query);
         try {
-            URL url = new URL(fileUrl);
-            try (InputStream inputStream = url.openStream();
-                 BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream)) {
-                ZipEntry zipEntry = new ZipEntry(fileName);
-                zipOut.putNextEntry(zipEntry);                
-                byte[] buffer = new byte[1024];
-                int length;
-                while ((length = bufferedInputStream.read(buffer)) >= 0) {
-                    zipOut.write(buffer, 0, length);
-                }                
-                zipOut.closeEntry();
-            }
-        } catch (Exception e) {
-            System.err.println("Error downloading file from URL " + fileUrl + ": " + e.getMessage());
-            throw new IOException("Failed to download file: " + fileUrl, e);
+            List<Book> items = bookRepository.findSlice(filter, offset, limit);
+            Long total = includeTotal ? bookRepository.count(filter) : null;
+            return new BookPage(items, items.size() == limit ? offset + limit : null, total);
+        } catch (HttpClientErrorException e) {
+            throw new ResourceNotFoundException("No books found for query: " + query);
         }
     }
 
-    private String sanitizeFileName(String fileName) {
-        return fileName.replaceAll("[^a-zA-Z0-9._-]", "_").substring(0, Math.min(fileName.length(), 100));
+    // Last book_id of a full page; a short page is the last one
+    private Integer nextCursor(List<Book> items, int limit) {
+        return items.size() == limit ? items.get(items.size() - 1).getBook_id() : null;
+    }
+
+    private String searchFilter(String query) {
+        return "or=(title.ilike.*" + query + "*,author.ilike.*" + query + "*)";
     }
 
+    @PreDestroy
+    public void shutdown() {
+        writeFollowUpExecutor.shutdown();
+    }
 }
@@ -0,0 +1,42 @@
+package com.example.E_Library.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks the minimum token version that is still accepted. Stateless tokens
+ * carry the version they were issued with, so bumping it here invalidates
+ * every older token without a Supabase lookup per request. Tokens issued
+ * without a version claim count as version 0.
+ *
+ * Per-user revocations (password and role changes) live in this instance's
+ * memory only: they do not survive a restart and are not seen by other
+ * instances. Raising app.jwt.token-version is the fleet-wide, durable way
+ * to revoke.
+ */
+@Service
+public class TokenVersionService {
+
+    // Raise in configuration to invalidate all issued tokens at once
+    @Value("${app.jwt.token-version:1}")
+    private long globalVersion;
+
+    private final Map<String, Long> userVersions = new ConcurrentHashMap<>();
+
+    public long currentVersion(String username) {
+        return Math.max(globalVersion, userVersions.getOrDefault(username, 0L));
+    }
+
+    public boolean isCurrent(String username, long tokenVersion) {
+        return tokenVersion >= currentVersion(username);
+    }
+
+    // Forces the user to log in again, e.g. after a role or password change
+    public void revokeTokens(String username) {
+        userVersions.compute(username,
+                (name, version) -> Math.max(globalVersion, version == null ? 0L : version) + 1);
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.E_Library.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * The directory behind /uploads. Book files saved by this server are
+ * referenced from Supabase as "/uploads/<name>" (or the public URL of that
+ * path), and readers that run in this process open them directly instead of
+ * fetching them back over HTTP.
+ *
+ * New uploads are content-addressed: the SHA-256 is computed while the file
+ * streams to disk and the file lands at "ab/cd/<sha256>.pdf", so uploading
+ * the same PDF again reuses the stored copy. A stored file is shared by
+ * every book row whose file_url points at it; it is deleted once the last
+ * such row is gone (see {@link #deleteIfUnreferenced}). Older
+ * timestamp-named files are served as before but never deleted.
+ */
+@Service
+public class UploadStore {
+
+    public static final String URL_PREFIX = "/uploads/";
+
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}(\\.[A-Za-z0-9]+)?");
+
+    private static final String INCOMING = ".incoming";
+    private static final String EXTENSION = ".pdf";
+
+    /** A saved upload; deduplicated when identical bytes were already stored. */
+    public record StoredFile(String url, String sha256, long size, boolean deduplicated) {
+    }
+
+    /** What conditional and range requests need to know about a stored file. */
+    public record FileInfo(long size, long lastModified, String sha256) {
+    }
+
+    private record HashKey(Path file, long size, long lastModified) {
+    }
+
+    // Uploads in progress (saved, book row not yet inserted) and when each file was last stored and released
+    private static final class Reference {
+        int pending;
+        long storedAt;
+        long releasedAt;
+    }
+
+    private final Path directory;
+    private final String publicPrefix;
+    // Hashing reads the whole file, so it is done once per (file, size, mtime)
+    private final Cache<HashKey, String> hashes = Caffeine.newBuilder().maximumSize(10_000).build();
+    // Per-file lock and state: storing and deleting the same file never interleave
+    private final ConcurrentHashMap<Path, Reference> references = new ConcurrentHashMap<>();
+
+    public UploadStore(@Value("${app.uploads.path:uploads}") String path,
+                       @Value("${app.public-base-url:http://localhost:8080}") String publicBaseUrl) {
+        this.directory = Paths.get(path).toAbsolutePath().normalize();
+        String base = publicBaseUrl.endsWith("/") ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1) : publicBaseUrl;
+        this.publicPrefix = base + URL_PREFIX;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    // The stored file for a name under /uploads, or null if the name escapes the directory or is still being written
+    public Path resolve(String filename) {
+        Path file = directory.resolve(filename).normalize();
+        return file.startsWith(directory) && !file.equals(directory) && !file.startsWith(directory.resolve(INCOMING))
+                ? file : null;
+    }
+
+    /**
+     * Whether the file is named after the SHA-256 of its content, so its
+     * bytes can never change under that name.
+     */
+    public boolean isContentAddressed(Path file) {
+        return CONTENT_ADDRESSED.matcher(file.getFileName().toString()).matches();
+    }
+
+    public FileInfo info(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String sha256;
+        if (isContentAddressed(file)) {
+            String name = file.getFileName().toString();
+            sha256 = name.substring(0, 64);
+        } else {
+            HashKey key = new HashKey(file, size, lastModified);
+            sha256 = hashes.getIfPresent(key);
+            if (sha256 == null) {
+                sha256 = sha256(file);
+                hashes.put(key, sha256);
+            }
+        }
+        return new FileInfo(size, lastModified, sha256);
+    }
+
+    /**
+     * Streams the upload to a temporary file while hashing it, then moves it
+     * to its content address, or drops it if that file already exists. The
+     * file stays protected from {@link #deleteIfUnreferenced} until
+     * {@link #release} is called, which must happen after the book row
+     * referencing it has been written (or has failed to be).
+     */
+    public StoredFile store(InputStream content) throws IOException {
+        Path temp = createIncomingFile("upload-");
+        try {
+            MessageDigest digest = newDigest();
+            long size;
+            try (InputStream in = new DigestInputStream(content, digest);
+                 OutputStream out = Files.newOutputStream(temp)) {
+                size = in.transferTo(out);
+            }
+            return adopt(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // An empty file on the same file system as the store, so adopt() can move it in place
+    public Path createIncomingFile(String prefix) throws IOException {
+        Path incoming = Files.createDirectories(directory.resolve(INCOMING));
+        return Files.createTempFile(incoming, prefix, ".part");
+    }
+
+    /**
+     * Like {@link #store}, for a file already written by the caller under
+     * {@link #createIncomingFile} whose SHA-256 it computed on the way.
+     * The file is moved (or deleted, when the content is already stored).
+     */
+    public StoredFile adopt(Path incomingFile, String sha256, long size) throws IOException {
+        Path target = directory.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4))
+                .resolve(sha256 + EXTENSION);
+        boolean[] existed = new boolean[1];
+        try {
+            references.compute(target, (path, reference) -> {
+                try {
+                    existed[0] = Files.exists(path);
+                    if (existed[0]) {
+                        Files.delete(incomingFile);
+                    } else {
+                        Files.createDirectories(path.getParent());
+                        Files.move(incomingFile, path, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                Reference updated = reference != null ? reference : new Reference();
+                updated.pending++;
+                updated.storedAt = System.nanoTime();
+                return updated;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new StoredFile(URL_PREFIX + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/"
+                + sha256 + EXTENSION, sha256, size, existed[0]);
+    }
+
+    // Ends the protection store() gave the file; a reference count already under way still keeps it
+    public void release(StoredFile stored) {
+        Path file = resolve(stored.url().substring(URL_PREFIX.length()));
+        references.computeIfPresent(file, (path, reference) -> {
+            reference.pending--;
+            reference.releasedAt = System.nanoTime();
+            return reference;
+        });
+    }
+
+    /**
+     * Deletes the content-addressed file behind fileUrl if no book row refers
+     * to it any more. countReferences is asked for the number of rows with
+     * this file_url; an upload of the same content that has not been
+     * released, or was stored or released after the count started (its row
+     * may have been written too late to be counted), keeps the file.
+     * Completes with whether the file was deleted, or fails with an
+     * UncheckedIOException. The delete runs on executor, not on whichever
+     * thread completes the count.
+     */
+    public CompletableFuture<Boolean> deleteIfUnreferenced(String fileUrl,
+                                                           Supplier<CompletableFuture<Long>> countReferences,
+                                                           Executor executor) {
+        Path file = localFile(fileUrl);
+        if (file == null || !isContentAddressed(file)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        long countedAt = System.nanoTime();
+        return countReferences.get()
+                .thenApplyAsync(count -> count == 0 && deleteUnlessStoredSince(file, countedAt), executor);
+    }
+
+    private boolean deleteUnlessStoredSince(Path file, long countedAt) {
+        boolean[] deleted = new boolean[1];
+        references.compute(file, (path, reference) -> {
+            if (reference != null && (reference.pending > 0 || reference.storedAt - countedAt >= 0
+                    || reference.releasedAt - countedAt >= 0)) {
+                return reference;
+            }
+            try {
+                deleted[0] = Files.deleteIfExists(path);
+                deleteIfEmpty(path.getParent());
+                deleteIfEmpty(path.getParent().getParent());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        return deleted[0];
+    }
+
+    private static void deleteIfEmpty(Path shard) throws IOException {
+        try {
+            Files.deleteIfExists(shard);
+        } catch (DirectoryNotEmptyException e) {
+            // still holds other files
+        }
+    }
+
+    static String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BookFileFetcher.BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The local file behind fileUrl when it points at this server's uploads
+     * and the file exists; null for anything that has to be fetched remotely.
+     */
+    public Path localFile(String fileUrl) {
+        String name;
+        if (fileUrl.startsWith(URL_PREFIX)) {
+            name = fileUrl.substring(URL_PREFIX.length());
+        } else if (fileUrl.startsWith(publicPrefix)) {
+            name = fileUrl.substring(publicPrefix.length());
+        } else {
+            return null;
+        }
+        Path file = resolve(name);
+        return file != null && Files.isRegularFile(file) ? file : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.E_Library.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.example.E_Library.utils.Futures;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * In-process cache of UserDetails keyed by username, so the JWT filter does not
+ * hit Supabase on every authenticated request.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final AsyncCache<String, UserDetails> cache;
+
+    public UserDetailsCache(@Value("${app.cache.users.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${app.cache.users.max-size:10000}") long maxSize,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size tagged cache=userDetails
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    /**
+     * Returns the cached entry or loads it once; concurrent callers for the same
+     * username wait for that single load. Failed loads are not cached.
+     *
+     * The load runs on the calling thread but outside the cache's map lock: a
+     * synchronous Caffeine cache would run it inside ConcurrentHashMap.compute,
+     * pinning a virtual thread to its carrier for the whole Supabase round trip.
+     */
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        CompletableFuture<UserDetails> load = new CompletableFuture<>();
+        CompletableFuture<UserDetails> entry = cache.get(username, (key, executor) -> load);
+        if (entry == load) {
+            try {
+                load.complete(loader.apply(username));
+            } catch (RuntimeException | Error e) {
+                load.completeExceptionally(e);
+                throw e;
+            }
+        }
+        UserDetails cached;
+        try {
+            cached = entry.join();
+        } catch (RuntimeException e) {
+            Throwable failure = Futures.unwrap(e);
+            throw failure instanceof RuntimeException ? (RuntimeException) failure : e;
+        }
+        // Hand out a copy: the AuthenticationManager erases credentials on the
+        // principal it is given, which must not wipe the cached password hash.
+        return User.withUserDetails(cached).build();
+    }
+
+    // Call after registration or when a user's roles/password change
+    public void invalidate(String username) {
+        if (username != null) {
+            cache.synchronous().invalidate(username);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+}
@@ -2,20 +2,17 @@ package com.example.E_Library.service;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import com.example.E_Library.model.User;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.E_Library.repository.UserRepository;
+import com.example.E_Library.utils.Futures;
 
 import org.springframework.web.client.HttpClientErrorException;
 import com.example.E_Library.exceptions.*;
@@ -24,100 +21,156 @@ public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
 	@Autowired
-	private PasswordEncoder passwordEncoder;
+	private PasswordHashingService passwordHashingService;
 
-	@Value("${PROJECT_URL}")
-    private String projectUrl;
+    @Autowired
+    private UserRepository userRepository;
 
-	 @Value("${SECRET_KEY}")
-	 private String secretKey;
+    @Autowired
+    private UserDetailsCache userDetailsCache;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-
-    // Helper headers
-    private HttpHeaders getHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("apikey", secretKey);
-        headers.set("Authorization", "Bearer " + secretKey);
-        return headers;
-    }
+    @Autowired
+    private TokenVersionService tokenVersionService;
 
     // Register user
-    public String registerUser(User user) {
-        String url = projectUrl + "/rest/v1/users"; // "users" table in DB
-        Map<String, Object> newUser = new HashMap<>();
-        String encodedPassword = passwordEncoder.encode(user.getPassword());
-        newUser.put("username", user.getUsername());
-        newUser.put("email", user.getEmail());
-        newUser.put("password", encodedPassword);
-        newUser.put("is_admin", false);
-
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(newUser,getHeaders());
+    public CompletableFuture<String> registerUser(User user) {
+        // Hashed on the bounded BCrypt pool; fails with ServiceBusyException when saturated
+        return passwordHashingService.encodeAsync(user.getPassword()).thenCompose(encodedPassword -> {
+            Map<String, Object> newUser = new HashMap<>();
+            newUser.put("username", user.getUsername());
+            newUser.put("email", user.getEmail());
+            newUser.put("password", encodedPassword);
+            newUser.put("is_admin", false);
 
-        try {
             logger.info("Sending registration request to Supabase for user: {}", user.getEmail());
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            logger.info("Successfully registered user: {}", user.getEmail());
-            return response.getBody();
-        } catch (HttpClientErrorException e) {
-            // Log the error with details from the exception
-
-            logger.error("Error during user registration for email {}: Status Code: {}, Response: {}",
-                    user.getEmail(), e.getStatusCode(), e.getResponseBodyAsString(), e);
-            throw new SupabaseException("Error registering user: "+e.getResponseBodyAsString());
-        }
-        catch (Exception e) {
-            throw new SupabaseException("Unexpected error while registering user: " + e.getMessage());
-        }
-
+            CompletableFuture<String> response = userRepository.insertAsync(newUser).thenApply(body -> {
+                logger.info("Successfully registered user: {}", user.getEmail());
+                userDetailsCache.invalidate(user.getUsername());
+                return body;
+            });
+            return Futures.mapFailure(response, e -> {
+                if (e instanceof ServiceBusyException) {
+                    return e; // Supabase refused locally: 503 with Retry-After
+                }
+                if (e instanceof HttpClientErrorException clientError) {
+                    logger.error("Error during user registration for email {}: Status Code: {}, Response: {}",
+                            user.getEmail(), clientError.getStatusCode(), clientError.getResponseBodyAsString(), e);
+                    return new SupabaseException("Error registering user: " + clientError.getResponseBodyAsString());
+                }
+                return new SupabaseException("Unexpected error while registering user: " + e.getMessage());
+            });
+        });
     }
 
-    // Login user
-    public boolean loginUser(String email, String rawPassword) {
+    /**
+     * Authenticates with a single user fetch and a single BCrypt check, and
+     * returns the fetched row so the caller can mint the token from it.
+     */
+    public CompletableFuture<User> authenticate(String email, String rawPassword) {
         logger.debug("Login attempt for email: {}", email);
-        String url = projectUrl + "/rest/v1/users?email=eq." + email;
-        HttpEntity<String> entity = new HttpEntity<>(getHeaders());
-
-        try {
-            logger.info("Fetching user details from Supabase for email: {}", email);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            String body = response.getBody();
-
-            if (body == null || body.equals("[]")) {
+        logger.info("Fetching user details from Supabase for email: {}", email);
+        CompletableFuture<User> authenticated = userRepository.findByEmailAsync(email).thenCompose(found -> {
+            User user = found.orElseThrow(() -> {
                 logger.warn("Login failed: No user found for email: {}", email);
-                throw new ResourceNotFoundException("Invalid Password or Email");
-            }
+                return new ResourceNotFoundException("Invalid Password or Email");
+            });
+            String encodedPassword = user.getPassword();
 
-            // Parse user
-            JsonNode array = new ObjectMapper().readTree(body);
-            JsonNode node = array.get(0);
-            String encodedPassword = node.get("password").asText();
-
-            // Compare passwords
             // Compare passwords
-            boolean passwordMatches = passwordEncoder.matches(rawPassword, encodedPassword);
-            if (passwordMatches) {
+            return passwordHashingService.matchesAsync(rawPassword, encodedPassword).thenApply(passwordMatches -> {
+                if (!passwordMatches) {
+                    logger.warn("Login failed: Invalid password for email: {}", email);
+                    // Invalid password
+                    throw new AuthenticationFailedException("Invalid Pssword or Email");
+                }
                 logger.info("Login successful for email: {}", email);
-                return true;
-            } else {
-                logger.warn("Login failed: Invalid password for email: {}", email);
-                // Invalid password
-                throw new AuthenticationFailedException("Invalid Pssword or Email");
+                if (passwordHashingService.needsRehash(encodedPassword)) {
+                    passwordHashingService.rehashAsync(rawPassword, newHash -> updatePasswordHash(user, newHash));
+                }
+                return user;
+            });
+        });
+
+        return Futures.mapFailure(authenticated, e -> {
+            if (e instanceof AuthenticationFailedException || e instanceof ResourceNotFoundException
+                    || e instanceof ServiceBusyException) {
+                return e; // known exceptions pass through
+            }
+            if (e instanceof HttpClientErrorException clientError) {
+                logger.error("Supabase API error during login for email {}: {}", email,
+                        clientError.getResponseBodyAsString(), e);
+                return new SupabaseException("Supabase API error: " + clientError.getResponseBodyAsString());
+            }
+            logger.error("Unexpected error during login for email {}:", email, e);
+            return new SupabaseException("Unexpected error while logging in: " + e.getMessage());
+        });
+    }
 
+    /**
+     * Replaces the password after checking the current one, and revokes the
+     * user's tokens so sessions holding the old credentials must log in again.
+     */
+    public CompletableFuture<Void> changePassword(String username, String currentPassword, String newPassword) {
+        CompletableFuture<Void> changed = findUser(username).thenCompose(user ->
+                passwordHashingService.matchesAsync(currentPassword, user.getPassword()).thenCompose(matches -> {
+                    if (!matches) {
+                        logger.warn("Password change refused for user {}: current password does not match", username);
+                        throw new AuthenticationFailedException("Invalid password");
+                    }
+                    return passwordHashingService.encodeAsync(newPassword);
+                }).thenCompose(encodedPassword -> userRepository.updatePasswordAsync(user.getUser_id(), encodedPassword))
+                .thenRun(() -> {
+                    credentialsChanged(username);
+                    logger.info("Password changed for user {}", username);
+                }));
+        return mapUpdateFailure(changed, username);
+    }
+
+    // Grants or withdraws the admin role; tokens carrying the old roles stop working
+    public CompletableFuture<Void> setAdmin(String username, boolean admin) {
+        CompletableFuture<Void> changed = findUser(username)
+                .thenCompose(user -> userRepository.updateAdminAsync(user.getUser_id(), admin))
+                .thenRun(() -> {
+                    credentialsChanged(username);
+                    logger.info("Admin role of user {} set to {}", username, admin);
+                });
+        return mapUpdateFailure(changed, username);
+    }
+
+    private CompletableFuture<User> findUser(String username) {
+        return userRepository.findByUsernameAsync(username).thenApply(found -> found.orElseThrow(
+                () -> new ResourceNotFoundException("User not found with username: " + username)));
+    }
+
+    private void credentialsChanged(String username) {
+        userDetailsCache.invalidate(username);
+        tokenVersionService.revokeTokens(username);
+    }
+
+    private <T> CompletableFuture<T> mapUpdateFailure(CompletableFuture<T> update, String username) {
+        return Futures.mapFailure(update, e -> {
+            if (e instanceof AuthenticationFailedException || e instanceof ResourceNotFoundException
+                    || e instanceof ServiceBusyException) {
+                return e;
+            }
+            if (e instanceof HttpClientErrorException clientError) {
+                logger.error("Supabase API error while updating user {}: {}", username,
+                        clientError.getResponseBodyAsString(), e);
+                return new SupabaseException("Error updating user: " + clientError.getResponseBodyAsString());
             }
+            return new SupabaseException("Unexpected error while updating user: " + e.getMessage());
+        });
+    }
 
-        } catch (AuthenticationFailedException | ResourceNotFoundException ex) {
-            throw ex; // rethrow known exceptions
+    // Stores a hash produced with the current BCrypt cost factor; same password, so tokens stay valid
+    private void updatePasswordHash(User user, String newHash) {
+        try {
+            userRepository.updatePassword(user.getUser_id(), newHash);
+            userDetailsCache.invalidate(user.getUsername());
+            logger.info("Re-hashed password for user {} with the current cost factor", user.getUsername());
         } catch (HttpClientErrorException e) {
-            logger.error("Supabase API error during login for email {}: {}", email, e.getResponseBodyAsString(), e);
-            throw new SupabaseException("Supabase API error: " + e.getResponseBodyAsString());
-        } catch (Exception e) {
-            logger.error("Unexpected error during login for email {}:", email, e);
-            throw new SupabaseException("Unexpected error while logging in: " + e.getMessage());
+            logger.warn("Could not store re-hashed password for user {}: {}", user.getUsername(),
+                    e.getResponseBodyAsString());
         }
     }
-
-
 }
-
@@ -0,0 +1,104 @@
+package com.example.E_Library.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.BookPage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Serialises books to the response stream, prefixing relative file_url
+ * values with the public base URL. Rows are written one at a time through a
+ * single generator, so no intermediate JSON string or tree is built.
+ */
+@Component
+public class FileUrlRewriter {
+
+	private final ObjectMapper objectMapper;
+	private final ObjectWriter bookWriter;
+	private final String publicBaseUrl;
+
+	public FileUrlRewriter(@Value("${app.public-base-url:http://localhost:8080}") String publicBaseUrl,
+			ObjectMapper objectMapper) {
+		this.publicBaseUrl = publicBaseUrl.endsWith("/")
+				? publicBaseUrl.substring(0, publicBaseUrl.length() - 1)
+				: publicBaseUrl;
+		this.objectMapper = objectMapper;
+		this.bookWriter = objectMapper.writerFor(Book.class);
+	}
+
+	public String toPublicUrl(String fileUrl) {
+		// Only prepend the base URL if the URL is not already complete
+		if (fileUrl.startsWith("http://") || fileUrl.startsWith("https://")) {
+			return fileUrl;
+		}
+		return publicBaseUrl + fileUrl;
+	}
+
+	// [book, ...]
+	public void writeBooks(List<Book> books, OutputStream out) throws IOException {
+		try (JsonGenerator generator = generator(out)) {
+			writeArray(books, generator);
+		}
+	}
+
+	// A single book, or {} when there is none
+	public void writeBook(Book book, OutputStream out) throws IOException {
+		try (JsonGenerator generator = generator(out)) {
+			if (book != null) {
+				bookWriter.writeValue(generator, withPublicUrl(book));
+			} else {
+				generator.writeStartObject();
+				generator.writeEndObject();
+			}
+		}
+	}
+
+	// {"items":[...],"next_cursor":..,"total":..}
+	public void writePage(BookPage page, OutputStream out) throws IOException {
+		try (JsonGenerator generator = generator(out)) {
+			generator.writeStartObject();
+			generator.writeFieldName("items");
+			writeArray(page.getItems(), generator);
+			if (page.getNextCursor() != null) {
+				generator.writeNumberField("next_cursor", page.getNextCursor());
+			} else {
+				generator.writeNullField("next_cursor");
+			}
+			if (page.getTotal() != null) {
+				generator.writeNumberField("total", page.getTotal());
+			}
+			generator.writeEndObject();
+		}
+	}
+
+	private void writeArray(List<Book> books, JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		for (Book book : books) {
+			bookWriter.writeValue(generator, withPublicUrl(book));
+		}
+		generator.writeEndArray();
+	}
+
+	// Cached books are shared between requests, so the rewrite goes on a copy
+	private Book withPublicUrl(Book book) {
+		if (book.getFile_url() == null) {
+			return book;
+		}
+		return new Book(book.getBook_id(), book.getTitle(), book.getAuthor(), book.getDescription(),
+				toPublicUrl(book.getFile_url()), book.getUploaded_by(), book.getUploaded_at(), book.getCategory_id());
+	}
+
+	private JsonGenerator generator(OutputStream out) throws IOException {
+		return objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+				.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+}
@@ -0,0 +1,33 @@
+package com.example.E_Library.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Helpers for the CompletableFuture chains behind the async endpoints.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    // The exception a stage failed with, without the wrapper dependent stages add
+    public static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException)
+                && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Replaces the failure of future with what mapping makes of it (given the
+     * unwrapped exception); the async form of catching and rethrowing.
+     */
+    public static <T> CompletableFuture<T> mapFailure(CompletableFuture<T> future,
+                                                      Function<Throwable, ? extends Throwable> mapping) {
+        return future.exceptionallyCompose(failure -> CompletableFuture.failedFuture(mapping.apply(unwrap(failure))));
+    }
+}
@@ -1,16 +1,33 @@
 package com.example.E_Library.utils;
 
+import java.security.Key;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
-import org.springframework.security.core.userdetails.UserDetails;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import com.example.E_Library.exceptions.InvalidJwtException;
+import com.example.E_Library.exceptions.JwtTokenExpiredException;
+import com.example.E_Library.model.User;
+import com.example.E_Library.model.VerifiedToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 
 @Component
@@ -18,44 +35,84 @@ public class JwtUtil {
 
 	private static final String SECRET_KEY="learn_programming_yourself";
 	private static final int TOKEN_VALIDITY = 3600 * 5 ;
-	
-	public String getUserNameFromToken(String token) {
-		return getClaimFromToken(token,Claims::getSubject);
-	}
 
-	
-	private <T> T getClaimFromToken(String token , Function<Claims,T> claimResolver) {
-		final Claims claims = getAllClaimsFromToken(token);
-		return claimResolver.apply(claims);
-	}
-	
-	private Claims getAllClaimsFromToken(String token) {
-		return Jwts.parser().setSigningKey(SECRET_KEY).parseClaimsJws(token).getBody();
-	}
-	
-	public Boolean validateToken(String token , UserDetails userDetails) {
-		String userName = getUserNameFromToken(token);
-		return(userName.equals(userDetails.getUsername()) && !isTokenExpired(token));
+	// Same bytes jjwt derives from the base64 String secret, built once instead of per parse
+	private static final Key SIGNING_KEY = new SecretKeySpec(
+			TextCodec.BASE64.decode(SECRET_KEY), SignatureAlgorithm.HS512.getJcaName());
+
+	private static final String CLAIM_USER_ID = "user_id";
+	private static final String CLAIM_IS_ADMIN = "is_admin";
+	private static final String CLAIM_ROLES = "roles";
+	private static final String CLAIM_TOKEN_VERSION = "ver";
+
+	// Recently verified bearer tokens, so repeat requests skip the HMAC and JSON parse
+	private final Cache<String, VerifiedToken> verifiedTokens;
+
+	public JwtUtil(@Value("${app.jwt.verified-cache-size:10000}") long verifiedCacheSize,
+			MeterRegistry meterRegistry) {
+		this.verifiedTokens = Caffeine.newBuilder()
+				.maximumSize(verifiedCacheSize)
+				.expireAfterWrite(Duration.ofMinutes(10))
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedTokens");
 	}
-	
-	private Boolean isTokenExpired(String token) {
-		final Date expirationDate = getExpirationDateFromToken(token);
-		return expirationDate.before(new Date());
+
+	/**
+	 * Parses and signature-checks the token at most once, returning its claims.
+	 *
+	 * @throws JwtTokenExpiredException if the token has expired
+	 * @throws InvalidJwtException if the token is malformed or the signature does not match
+	 */
+	public VerifiedToken verify(String token) {
+		VerifiedToken verified = verifiedTokens.getIfPresent(token);
+		if (verified == null) {
+			verified = parse(token);
+			verifiedTokens.put(token, verified);
+		}
+		if (verified.isExpired()) {
+			verifiedTokens.invalidate(token);
+			throw new JwtTokenExpiredException("Jwt Token Expired");
+		}
+		return verified;
 	}
-	
-	private Date getExpirationDateFromToken(String token) {
-		return getClaimFromToken(token,Claims::getExpiration);
+
+	private VerifiedToken parse(String token) {
+		final Claims claims;
+		try {
+			claims = Jwts.parser().setSigningKey(SIGNING_KEY).parseClaimsJws(token).getBody();
+		} catch (ExpiredJwtException e) {
+			throw new JwtTokenExpiredException("Jwt Token Expired");
+		} catch (JwtException | IllegalArgumentException e) {
+			throw new InvalidJwtException("Invalid Jwt Token: " + e.getMessage());
+		}
+
+		Object userId = claims.get(CLAIM_USER_ID);
+		Object roles = claims.get(CLAIM_ROLES);
+		Object version = claims.get(CLAIM_TOKEN_VERSION);
+
+		return new VerifiedToken(
+				claims.getSubject(),
+				claims.getExpiration(),
+				userId instanceof Number ? ((Number) userId).intValue() : null,
+				Boolean.TRUE.equals(claims.get(CLAIM_IS_ADMIN)),
+				roles instanceof Collection ? ((Collection<?>) roles).stream().map(Object::toString).toList() : null,
+				version instanceof Number ? ((Number) version).longValue() : 0L);
 	}
-	
-	public String generateToken(UserDetails userDetails) {
+
+	public String generateToken(User user, Collection<? extends GrantedAuthority> authorities, long tokenVersion) {
 		Map<String,Object> claims = new HashMap<>();
-		
+		claims.put(CLAIM_USER_ID, user.getUser_id());
+		claims.put(CLAIM_IS_ADMIN, Boolean.TRUE.equals(user.getIs_admin()));
+		claims.put(CLAIM_ROLES, authorities.stream().map(GrantedAuthority::getAuthority).toList());
+		claims.put(CLAIM_TOKEN_VERSION, tokenVersion);
+
 		return Jwts.builder()
 				.setClaims(claims)
-				.setSubject(userDetails.getUsername())
+				.setSubject(user.getUsername())
 				.setIssuedAt(new Date(System.currentTimeMillis()))
 				.setExpiration(new Date(System.currentTimeMillis()+TOKEN_VALIDITY*1000))
-				.signWith(SignatureAlgorithm.HS512, SECRET_KEY)
+				.signWith(SignatureAlgorithm.HS512, SIGNING_KEY)
 				.compact()
 				;
 	}
@@ -0,0 +1,48 @@
+package com.example.E_Library.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns titles, authors and queries into search terms: accents are stripped,
+ * text is lower-cased and split on anything that is not a letter or digit,
+ * so "Gabriel García Márquez" and "garcia marquez" produce the same terms.
+ */
+public final class TextAnalyzer {
+
+	private TextAnalyzer() {
+	}
+
+	public static String normalize(String text) {
+		if (text == null || text.isEmpty()) {
+			return "";
+		}
+		String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+		StringBuilder out = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if (Character.getType(c) != Character.NON_SPACING_MARK) {
+				out.append(c);
+			}
+		}
+		return out.toString().toLowerCase(Locale.ROOT);
+	}
+
+	public static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		String normalized = normalize(text);
+		int start = -1;
+		for (int i = 0; i <= normalized.length(); i++) {
+			boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				tokens.add(normalized.substring(start, i));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+}
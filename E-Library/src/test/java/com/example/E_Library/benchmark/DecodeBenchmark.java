@@ -0,0 +1,124 @@
+package com.example.E_Library.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.User;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Decoding PostgREST responses: a fresh ObjectMapper + readTree + hand
+ * mapping (the old SupabaseService/UserService code) versus a cached
+ * ObjectReader reading the body stream into typed models.
+ * Add "-prof gc" to compare allocation per op.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="DecodeBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({"1", "1000"})
+    private int rows;
+
+    private final ObjectMapper sharedMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ObjectReader bookListReader = sharedMapper.readerFor(
+            sharedMapper.getTypeFactory().constructCollectionType(List.class, Book.class));
+    private final ObjectReader userListReader = sharedMapper.readerFor(
+            sharedMapper.getTypeFactory().constructCollectionType(List.class, User.class));
+
+    private byte[] booksJson;
+    private byte[] userJson;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("[");
+        for (int id = 1; id <= rows; id++) {
+            if (id > 1) {
+                json.append(',');
+            }
+            json.append("{\"book_id\":").append(id)
+                    .append(",\"title\":\"Book title ").append(id)
+                    .append("\",\"author\":\"Author ").append(id % 97)
+                    .append("\",\"description\":\"A reasonably long description of book number ").append(id)
+                    .append("\",\"file_url\":\"/uploads/").append(1755334330469L + id).append("_book.pdf")
+                    .append("\",\"uploaded_by\":1,\"uploaded_at\":\"2025-08-18T10:00:00\",\"category_id\":3}");
+        }
+        booksJson = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        userJson = ("[{\"user_id\":7,\"username\":\"reader\",\"email\":\"reader@example.com\","
+                + "\"password\":\"$2a$10$abcdefghijklmnopqrstuuJ2f3zqNqj1bCk2m0vFv7pQeVt5cG5yW\","
+                + "\"created_at\":\"2025-08-18T10:00:00\",\"updated_at\":\"2025-08-18T10:00:00\",\"is_admin\":false}]")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Previous code path: String body, new mapper, tree, field-by-field copy
+    @Benchmark
+    public List<Book> booksTree() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode array = mapper.readTree(new String(booksJson, StandardCharsets.UTF_8));
+        List<Book> books = new ArrayList<>(array.size());
+        for (JsonNode node : array) {
+            Book book = new Book();
+            book.setBook_id(node.get("book_id").asInt());
+            book.setTitle(node.get("title").asText());
+            book.setAuthor(node.get("author").asText());
+            book.setDescription(node.get("description").asText());
+            book.setFile_url(node.get("file_url").asText());
+            book.setUploaded_by(node.get("uploaded_by").asInt());
+            book.setUploaded_at(node.get("uploaded_at").asText());
+            book.setCategory_id(node.get("category_id").asInt());
+            books.add(book);
+        }
+        return books;
+    }
+
+    @Benchmark
+    public List<Book> booksTyped() throws Exception {
+        return bookListReader.readValue(new ByteArrayInputStream(booksJson));
+    }
+
+    @Benchmark
+    public User userTree() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode node = mapper.readTree(new String(userJson, StandardCharsets.UTF_8)).get(0);
+        User user = new User();
+        user.setUser_id(node.get("user_id").asInt());
+        user.setUsername(node.get("username").asText());
+        user.setEmail(node.get("email").asText());
+        user.setPassword(node.get("password").asText());
+        user.setCreated_at(node.get("created_at").asText());
+        user.setUpdated_at(node.get("updated_at").asText());
+        user.setIs_admin(node.get("is_admin").asBoolean());
+        return user;
+    }
+
+    @Benchmark
+    public User userTyped() throws Exception {
+        List<User> users = userListReader.readValue(new ByteArrayInputStream(userJson));
+        return users.get(0);
+    }
+}
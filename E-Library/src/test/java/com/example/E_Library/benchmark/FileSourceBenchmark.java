@@ -0,0 +1,145 @@
+package com.example.E_Library.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.E_Library.configuration.WorkerThreads;
+import com.example.E_Library.service.BookFileFetcher;
+import com.example.E_Library.service.UploadStore;
+import com.example.E_Library.utils.FileUrlRewriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Reading one uploaded 16 MB PDF for a ZIP bundle: the old loopback
+ * URL.openStream path with a 1 KB buffer, the pooled HTTP client, and the
+ * local FileChannel short circuit. The "megabytes" secondary result is MB/s.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=FileSourceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileSourceBenchmark {
+
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+    private static final String FILE_NAME = "book.pdf";
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    private Path uploads;
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private BookFileFetcher fetcher;
+    private String loopbackUrl;
+    private String remoteUrl;
+    private final byte[] buffer = new byte[256 * 1024];
+
+    @Setup
+    public void setUp() throws IOException {
+        uploads = Files.createTempDirectory("uploads");
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        Files.write(uploads.resolve(FILE_NAME), content);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, FILE_SIZE);
+            try (OutputStream body = exchange.getResponseBody()) {
+                Files.copy(uploads.resolve(FILE_NAME), body);
+            }
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        loopbackUrl = base + "/uploads/" + FILE_NAME;
+        // Not under /uploads/, so the fetcher has to go over HTTP
+        remoteUrl = base + "/files/" + FILE_NAME;
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create().build())
+                .build();
+        fetcher = new BookFileFetcher(new UploadStore(uploads.toString(), base),
+                new FileUrlRewriter(base, new ObjectMapper()), httpClient, 2, 16, new WorkerThreads(),
+                new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fetcher.shutdown();
+        httpClient.close();
+        server.stop(0);
+        Files.deleteIfExists(uploads.resolve(FILE_NAME));
+        Files.deleteIfExists(uploads);
+    }
+
+    // Previous downloadAndAddToZip: loopback HTTP through URL.openStream, 1 KB at a time
+    @Benchmark
+    public long loopbackUrlStream(Throughput throughput) throws IOException {
+        byte[] small = new byte[1024];
+        try (InputStream in = new URL(loopbackUrl).openStream()) {
+            return drain(in, small, throughput);
+        }
+    }
+
+    @Benchmark
+    public long pooledHttpClient(Throughput throughput) throws Exception {
+        try (InputStream in = fetcher.open(remoteUrl).get()) {
+            return drain(in, buffer, throughput);
+        }
+    }
+
+    @Benchmark
+    public long localFileChannel(Throughput throughput) throws Exception {
+        try (InputStream in = fetcher.open("/uploads/" + FILE_NAME).get()) {
+            return drain(in, buffer, throughput);
+        }
+    }
+
+    private long drain(InputStream in, byte[] into, Throughput throughput) throws IOException {
+        long total = 0;
+        int length;
+        while ((length = in.read(into)) >= 0) {
+            total += length;
+        }
+        throughput.megabytes += total / (1024.0 * 1024.0);
+        return total;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.E_Library.benchmark;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.utils.FileUrlRewriter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * file_url rewriting for GET /books: Jackson tree + toString() versus
+ * decoding into typed rows and FileUrlRewriter writing them to the stream.
+ * Both of those start from the raw body; cachedRowsRewrite is the catalog
+ * cache hit, where the rows were decoded once and only serialising is left.
+ * Add "-prof gc" to compare allocation per op.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="FileUrlRewriteBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileUrlRewriteBenchmark {
+
+    @Param({"100", "10000"})
+    private int catalogSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FileUrlRewriter fileUrlRewriter = new FileUrlRewriter("http://localhost:8080", objectMapper);
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    private final ObjectReader bookListReader = objectMapper.readerFor(new TypeReference<List<Book>>() { });
+
+    private String booksJson;
+    private List<Book> books;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("[");
+        for (int id = 1; id <= catalogSize; id++) {
+            if (id > 1) {
+                json.append(',');
+            }
+            json.append("{\"book_id\":").append(id)
+                    .append(",\"title\":\"Book title ").append(id)
+                    .append("\",\"author\":\"Author ").append(id % 97)
+                    .append("\",\"description\":\"A reasonably long description of book number ").append(id)
+                    .append("\",\"file_url\":\"/uploads/").append(1755334330469L + id).append("_book.pdf")
+                    .append("\",\"uploaded_by\":1,\"uploaded_at\":\"2025-08-18T10:00:00\",\"category_id\":3}");
+        }
+        booksJson = json.append(']').toString();
+        try {
+            books = bookListReader.readValue(booksJson);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Previous BookController code path
+    @Benchmark
+    public void treeRewrite() throws Exception {
+        ArrayNode books = (ArrayNode) objectMapper.readTree(booksJson);
+        for (JsonNode book : books) {
+            if (book.has("file_url")) {
+                String fileUrl = book.get("file_url").asText();
+                if (!fileUrl.startsWith("http://") && !fileUrl.startsWith("https://")) {
+                    ((ObjectNode) book).put("file_url", "http://localhost:8080" + fileUrl);
+                }
+            }
+        }
+        sink.write(books.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Same input as treeRewrite: decode the body, then serialise the rows
+    @Benchmark
+    public void streamingRewrite() throws Exception {
+        List<Book> decoded = bookListReader.readValue(booksJson);
+        fileUrlRewriter.writeBooks(decoded, sink);
+    }
+
+    // Catalog cache hit: rows already decoded
+    @Benchmark
+    public void cachedRowsRewrite() throws Exception {
+        fileUrlRewriter.writeBooks(books, sink);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.E_Library.benchmark;
+
+import java.security.Key;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import com.example.E_Library.model.User;
+import com.example.E_Library.model.VerifiedToken;
+import com.example.E_Library.utils.JwtUtil;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Per-request CPU cost of JWT handling in JwtRequestFilter.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=JwtVerificationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    // Legacy code passed the base64 String secret, re-decoding it on every parse
+    private static final String LEGACY_SECRET = "learn_programming_yourself";
+
+    private final Key signingKey = new SecretKeySpec(
+            TextCodec.BASE64.decode(LEGACY_SECRET), SignatureAlgorithm.HS512.getJcaName());
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(10_000, new SimpleMeterRegistry());
+
+        User user = new User();
+        user.setUser_id(42);
+        user.setUsername("bench_user");
+        user.setIs_admin(false);
+        token = jwtUtil.generateToken(user, List.of(new SimpleGrantedAuthority("ROLE_USER")), 1L);
+    }
+
+    // Before: getUserNameFromToken, then validateToken re-parsing for subject and expiry
+    @Benchmark
+    public void legacyTripleParse(Blackhole blackhole) {
+        blackhole.consume(parseLegacy().getSubject());
+        blackhole.consume(parseLegacy().getSubject());
+        blackhole.consume(parseLegacy().getExpiration());
+    }
+
+    // After, on a cache miss: one parse with the pre-built key
+    @Benchmark
+    public Claims singleParse() {
+        return Jwts.parser().setSigningKey(signingKey).parseClaimsJws(token).getBody();
+    }
+
+    // After, on a repeat request with the same bearer token
+    @Benchmark
+    public VerifiedToken cachedVerify() {
+        return jwtUtil.verify(token);
+    }
+
+    private Claims parseLegacy() {
+        return Jwts.parser().setSigningKey(LEGACY_SECRET).parseClaimsJws(token).getBody();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.E_Library.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.example.E_Library.model.User;
+import com.example.E_Library.utils.JwtUtil;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Logins per second on the CPU side of /users/login. Supabase round trips are
+ * not simulated: the old flow made five of them, the consolidated flow one.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=LoginBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final String RAW_PASSWORD = "correct horse battery staple";
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private JwtUtil jwtUtil;
+    private String userRow;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(10_000, new SimpleMeterRegistry());
+        userRow = "[{\"user_id\":7,\"username\":\"reader\",\"email\":\"reader@example.com\",\"password\":\""
+                + passwordEncoder.encode(RAW_PASSWORD)
+                + "\",\"created_at\":\"2025-08-18T10:00:00\",\"updated_at\":\"2025-08-18T10:00:00\",\"is_admin\":false}]";
+    }
+
+    // Before: five user row fetches and three BCrypt checks per login
+    @Benchmark
+    public void legacyLogin(Blackhole blackhole) throws Exception {
+        User user = null;
+        for (int fetch = 0; fetch < 5; fetch++) {
+            user = decodeUser();
+        }
+        for (int check = 0; check < 3; check++) {
+            blackhole.consume(passwordEncoder.matches(RAW_PASSWORD, user.getPassword()));
+        }
+        blackhole.consume(mint(user));
+    }
+
+    // After: one fetch, one BCrypt check, token minted from the same row
+    @Benchmark
+    public void consolidatedLogin(Blackhole blackhole) throws Exception {
+        User user = decodeUser();
+        blackhole.consume(passwordEncoder.matches(RAW_PASSWORD, user.getPassword()));
+        blackhole.consume(mint(user));
+    }
+
+    private User decodeUser() throws Exception {
+        return objectMapper.treeToValue(objectMapper.readTree(userRow).get(0), User.class);
+    }
+
+    private String mint(User user) {
+        return jwtUtil.generateToken(user, List.of(new SimpleGrantedAuthority("ROLE_USER")), 1L);
+    }
+}
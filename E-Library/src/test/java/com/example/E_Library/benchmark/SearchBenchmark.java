@@ -0,0 +1,120 @@
+package com.example.E_Library.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.service.BookSearchIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Query latency of the in-memory BookSearchIndex over a synthetic catalog,
+ * including fuzzy mode with misspelt words.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=SearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {
+            "history", "rome", "empire", "garden", "night", "river", "silent", "kingdom", "science", "stars",
+            "ocean", "journey", "winter", "shadow", "machine", "learning", "ancient", "modern", "poetry", "war",
+            "peace", "city", "forest", "secret", "letters", "memory", "light", "dark", "children", "island"};
+    private static final String[] AUTHORS = {
+            "Gabriel Garcia Marquez", "Jane Austen", "Fyodor Dostoevsky", "Toni Morrison", "Haruki Murakami",
+            "Chinua Achebe", "Virginia Woolf", "Leo Tolstoy", "Ursula Le Guin", "Kazuo Ishiguro"};
+
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ren", "tor", "sa", "vel", "di", "nor", "qua", "bri", "zen", "ul", "fa", "gro",
+            "pe", "th", "wy", "ox", "ja", "lu", "mar", "st", "ic", "ha"};
+
+    @Param({"1000", "10000", "100000"})
+    private int catalogSize;
+
+    private BookSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        List<Book> books = catalog(catalogSize);
+        index = new BookSearchIndex(new SimpleMeterRegistry());
+        index.load(books);
+    }
+
+    static List<Book> catalog(int size) {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            String title = phrase(random, 2 + random.nextInt(4)) + " " + id;
+            String description = phrase(random, 12 + random.nextInt(20));
+            books.add(new Book(id, title, AUTHORS[random.nextInt(AUTHORS.length)], description,
+                    "/uploads/" + id + "_book.pdf", 1, "2025-08-18T10:00:00", 1 + random.nextInt(10)));
+        }
+        return books;
+    }
+
+    // A few common words plus a long tail of rarer ones, roughly like real titles
+    private static String phrase(Random random, int words) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                phrase.append(' ');
+            }
+            phrase.append(random.nextInt(10) < 3 ? WORDS[random.nextInt(WORDS.length)] : rareWord(random));
+        }
+        return phrase.toString();
+    }
+
+    private static String rareWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int syllables = 2 + random.nextInt(3); syllables > 0; syllables--) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    @Benchmark
+    public BookSearchIndex.Result twoWords() {
+        return index.search("ancient rome", 0, 50);
+    }
+
+    @Benchmark
+    public BookSearchIndex.Result authorPrefix() {
+        return index.search("murak", 0, 50);
+    }
+
+    @Benchmark
+    public BookSearchIndex.Result fuzzyAuthor() {
+        return index.search("murakmi", 0, 50, true);
+    }
+
+    @Benchmark
+    public BookSearchIndex.Result fuzzyTwoWords() {
+        return index.search("ancinet rome", 0, 50, true);
+    }
+
+    // A misspelt rare title word, where the trigram filter does most of the work
+    @Benchmark
+    public BookSearchIndex.Result fuzzyRareWord() {
+        return index.search("kalomirn", 0, 50, true);
+    }
+}
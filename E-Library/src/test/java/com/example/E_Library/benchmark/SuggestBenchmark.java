@@ -0,0 +1,73 @@
+package com.example.E_Library.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.Suggestion;
+import com.example.E_Library.service.SuggestionIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Build time and per-keystroke query time of SuggestionIndex over the same
+ * synthetic catalog as SearchBenchmark.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=SuggestBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuggestBenchmark {
+
+    @Param({"1000", "100000"})
+    private int catalogSize;
+
+    private List<Book> books;
+    private SuggestionIndex index;
+
+    @Setup
+    public void setUp() {
+        books = SearchBenchmark.catalog(catalogSize);
+        index = new SuggestionIndex(new SimpleMeterRegistry(), 30);
+        index.load(books);
+    }
+
+    @Benchmark
+    public SuggestionIndex build() {
+        SuggestionIndex fresh = new SuggestionIndex(new SimpleMeterRegistry(), 30);
+        fresh.load(books);
+        return fresh;
+    }
+
+    // Served from the precomputed one/two-letter tops
+    @Benchmark
+    public List<Suggestion> shortPrefix() {
+        return index.suggest("h", 10);
+    }
+
+    @Benchmark
+    public List<Suggestion> commonPrefix() {
+        return index.suggest("his", 10);
+    }
+
+    @Benchmark
+    public List<Suggestion> authorPrefix() {
+        return index.suggest("murak", 10);
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.E_Library.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.repository.SingleFlight;
+import com.example.E_Library.repository.SupabaseAsyncClient;
+import com.example.E_Library.repository.SupabaseGuard;
+import com.example.E_Library.repository.SupabaseRestClient;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Load test for the Supabase access layer: 512 concurrent requests for one
+ * book row against a stub that answers after a fixed latency, served by a
+ * fixed pool of request threads (Tomcat's role). The blocking client holds
+ * a thread per in-flight call, so it tops out near threads / latency
+ * (200 threads at 150 ms: about 1,300 requests/s); the non-blocking client
+ * releases the thread once the request is sent, so throughput follows the
+ * number of concurrent requests instead. rows spreads the requests over
+ * that many distinct book rows: at 1 they are all identical and share a
+ * single upstream call per wave (SingleFlight). Scores are requests per second;
+ * the secondary upstreamCalls result is the calls that reached the stub.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=SupabaseClientLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SupabaseClientLoadBenchmark {
+
+    private static final int CONCURRENT_REQUESTS = 512;
+    private static final byte[] BOOK_ROW = ("[{\"book_id\":1,\"title\":\"Book title\",\"author\":\"Author\","
+            + "\"description\":\"A description\",\"file_url\":\"/uploads/book.pdf\",\"uploaded_by\":1,"
+            + "\"uploaded_at\":\"2025-08-18T10:00:00\",\"category_id\":3}]").getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // The JDK server closes idle keep-alive connections beyond 200 by default
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(CONCURRENT_REQUESTS * 2));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Upstream {
+        public long upstreamCalls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            upstreamCalls = 0;
+        }
+    }
+
+    @Param({"16", "64", "200"})
+    private int requestThreads;
+
+    @Param({"150"})
+    private int latencyMs;
+
+    @Param({"512", "1"})
+    private int rows;
+
+    private HttpServer server;
+    private ScheduledExecutorService responder;
+    private CloseableHttpClient blockingHttpClient;
+    private CloseableHttpAsyncClient asyncHttpClient;
+    private SupabaseRestClient restClient;
+    private SupabaseAsyncClient asyncClient;
+    private ExecutorService requestPool;
+    private final AtomicLong served = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        // Replies are scheduled rather than slept, so the stub itself never runs out of threads
+        responder = Executors.newSingleThreadScheduledExecutor();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), CONCURRENT_REQUESTS);
+        server.createContext("/rest/v1/books", exchange -> {
+            served.incrementAndGet();
+            responder.schedule(() -> respond(exchange), latencyMs, TimeUnit.MILLISECONDS);
+        });
+        server.start();
+
+        ObjectMapper objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        blockingHttpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(CONCURRENT_REQUESTS)
+                        .setMaxConnPerRoute(CONCURRENT_REQUESTS)
+                        .build())
+                .build();
+        asyncHttpClient = HttpAsyncClients.custom()
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(CONCURRENT_REQUESTS)
+                        .setMaxConnPerRoute(CONCURRENT_REQUESTS)
+                        .build())
+                .build();
+        asyncHttpClient.start();
+
+        // Bulkhead sized to the burst, so every request reaches the stub
+        SupabaseGuard guard = new SupabaseGuard(20, 10, 50, 30, 3, CONCURRENT_REQUESTS, 3, 100, 1000,
+                new SimpleMeterRegistry());
+        SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+        restClient = new SupabaseRestClient(new RestTemplate(new HttpComponentsClientHttpRequestFactory(blockingHttpClient)),
+                objectMapper, guard, singleFlight);
+        ReflectionTestUtils.setField(restClient, "projectUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(restClient, "secretKey", "benchmark");
+        asyncClient = new SupabaseAsyncClient(asyncHttpClient, restClient, objectMapper, guard, singleFlight);
+        requestPool = Executors.newFixedThreadPool(requestThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        requestPool.shutdownNow();
+        asyncHttpClient.close();
+        blockingHttpClient.close();
+        server.stop(0);
+        responder.shutdownNow();
+    }
+
+    // A request thread waits out the whole round trip
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public void blocking(Upstream upstream) throws Exception {
+        long before = served.get();
+        List<Future<List<Book>>> responses = new ArrayList<>(CONCURRENT_REQUESTS);
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            String query = "books?book_id=eq." + i % rows;
+            responses.add(requestPool.submit(() -> restClient.getList(query, Book.class)));
+        }
+        for (Future<List<Book>> response : responses) {
+            response.get();
+        }
+        upstream.upstreamCalls += served.get() - before;
+    }
+
+    // A request thread only sends the request; the I/O reactor completes the response
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public void nonBlocking(Upstream upstream) throws Exception {
+        long before = served.get();
+        List<Future<CompletableFuture<List<Book>>>> dispatched = new ArrayList<>(CONCURRENT_REQUESTS);
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            String query = "books?book_id=eq." + i % rows;
+            dispatched.add(requestPool.submit(() -> asyncClient.getList(query, Book.class)));
+        }
+        List<CompletableFuture<List<Book>>> responses = new ArrayList<>(CONCURRENT_REQUESTS);
+        for (Future<CompletableFuture<List<Book>>> request : dispatched) {
+            responses.add(request.get());
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+        upstream.upstreamCalls += served.get() - before;
+    }
+
+    private static void respond(HttpExchange exchange) {
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BOOK_ROW.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BOOK_ROW);
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+}
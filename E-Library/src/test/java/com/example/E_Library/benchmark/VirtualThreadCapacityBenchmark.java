@@ -0,0 +1,221 @@
+package com.example.E_Library.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.repository.SingleFlight;
+import com.example.E_Library.repository.SupabaseGuard;
+import com.example.E_Library.repository.SupabaseRestClient;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Virtual-thread mode against the default platform-thread pool: a burst of
+ * concurrent requests, each making the blocking Supabase call the
+ * synchronous endpoints make, against a stub that answers after a fixed
+ * latency. "platform" serves them on a fixed pool of 200 threads (Tomcat's
+ * default max-threads), so at most 200 are in flight; "virtual" gives each
+ * request its own virtual thread, so all of them are. Secondary results:
+ * requests (per second), and kbPerInFlight, the process RSS at the peak of
+ * a burst above what it was before the request executor existed, divided by
+ * the requests in flight at that moment (platform stacks vs. heap-allocated
+ * virtual stacks; heap growth makes it a rough figure).
+ * The virtual variant needs Java 21.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=VirtualThreadCapacityBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class VirtualThreadCapacityBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final byte[] BOOK_ROW = ("[{\"book_id\":1,\"title\":\"Book title\",\"author\":\"Author\","
+            + "\"description\":\"A description\",\"file_url\":\"/uploads/book.pdf\",\"uploaded_by\":1,"
+            + "\"uploaded_at\":\"2025-08-18T10:00:00\",\"category_id\":3}]").getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // The JDK server closes idle keep-alive connections beyond 200 by default
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "8192");
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Requests {
+        public long requests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+        public double kbPerInFlight;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            kbPerInFlight = 0;
+        }
+    }
+
+    @Param({"platform", "virtual"})
+    private String executor;
+
+    @Param({"1000", "4000"})
+    private int concurrentRequests;
+
+    @Param({"150"})
+    private int latencyMs;
+
+    private HttpServer server;
+    private ScheduledExecutorService responder;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private CloseableHttpClient httpClient;
+    private SupabaseRestClient restClient;
+    private ExecutorService platformPool;
+    private AsyncTaskExecutor requestExecutor;
+    private long baselineKb;
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("virtual".equals(executor) && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("The virtual variant needs Java 21, running on " + Runtime.version());
+        }
+        // Replies are scheduled rather than slept, so the stub itself never runs out of threads
+        responder = Executors.newSingleThreadScheduledExecutor();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), concurrentRequests);
+        server.createContext("/rest/v1/books", exchange -> {
+            inFlight.incrementAndGet();
+            responder.schedule(() -> respond(exchange), latencyMs, TimeUnit.MILLISECONDS);
+        });
+        server.start();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(concurrentRequests)
+                        .setMaxConnPerRoute(concurrentRequests)
+                        .build())
+                .build();
+        restClient = new SupabaseRestClient(new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient)),
+                new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false),
+                // Bulkhead sized to the burst, so every request reaches the stub
+                new SupabaseGuard(20, 10, 50, 30, 3, concurrentRequests, 3, 100, 1000, new SimpleMeterRegistry()),
+                new SingleFlight(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(restClient, "projectUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(restClient, "secretKey", "benchmark");
+
+        System.gc();
+        baselineKb = residentKb();
+        if ("virtual".equals(executor)) {
+            requestExecutor = new VirtualThreadTaskExecutor("request-");
+        } else {
+            platformPool = Executors.newFixedThreadPool(PLATFORM_THREADS);
+            requestExecutor = new TaskExecutorAdapter(platformPool);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+        httpClient.close();
+        server.stop(0);
+        responder.shutdownNow();
+    }
+
+    @Benchmark
+    public void serve(Requests requests, Memory memory) throws Exception {
+        List<Future<List<Book>>> responses = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            // Distinct rows, so SingleFlight does not merge the requests
+            String query = "books?book_id=eq." + i;
+            responses.add(requestExecutor.submit(() -> restClient.getList(query, Book.class)));
+        }
+        // Sample once the first wave is parked on the stub, before its replies come back
+        Thread.sleep(latencyMs / 2);
+        int peak = inFlight.get();
+        long peakKb = residentKb();
+        for (Future<List<Book>> response : responses) {
+            response.get();
+        }
+        inFlight.addAndGet(-concurrentRequests);
+        requests.requests += concurrentRequests;
+        if (peak > 0) {
+            memory.kbPerInFlight = Math.max(memory.kbPerInFlight, (double) Math.max(0, peakKb - baselineKb) / peak);
+        }
+    }
+
+    // VmRSS from /proc (Linux); 0 elsewhere
+    private static long residentKb() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return 0;
+    }
+
+    private static void respond(HttpExchange exchange) {
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BOOK_ROW.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BOOK_ROW);
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+}
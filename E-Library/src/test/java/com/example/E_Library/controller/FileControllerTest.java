@@ -0,0 +1,103 @@
+package com.example.E_Library.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.E_Library.service.UploadStore;
+
+class FileControllerTest {
+
+    private static final int SIZE = 1000;
+    private static final String URL = "/uploads/book.pdf";
+
+    @TempDir
+    Path uploads;
+
+    private MockMvc mockMvc;
+    private byte[] content;
+    private String etag;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        content = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(uploads.resolve("book.pdf"), content);
+        // No sendfile under MockMvc, so every body goes through Spring's resource handling
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new FileController(new UploadStore(uploads.toString(), "http://localhost"), Long.MAX_VALUE))
+                .build();
+        etag = mockMvc.perform(get(URL)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("\"");
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void staleIfRangeEtagSendsWholeFile() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(content));
+    }
+
+    @Test
+    void staleIfRangeDateSendsWholeFile() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, "Mon, 01 Jan 2001 00:00:00 GMT"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(content));
+    }
+
+    @Test
+    void singleRangeIsPartialContent() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=10-19").header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/" + SIZE))
+                .andExpect(content().bytes(Arrays.copyOfRange(content, 10, 20)));
+    }
+
+    @Test
+    void severalRangesAreMultipart() throws Exception {
+        MvcResult result = mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-9,100-109"))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+        assertThat(result.getResponse().getContentType()).startsWith("multipart/byteranges; boundary=");
+        String body = result.getResponse().getContentAsString();
+        assertThat(body).contains("Content-Range: bytes 0-9/" + SIZE, "Content-Range: bytes 100-109/" + SIZE);
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=5000-6000"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    @Test
+    void missingFileIsNotFound() throws Exception {
+        mockMvc.perform(get("/uploads/missing.pdf")).andExpect(status().isNotFound());
+    }
+}
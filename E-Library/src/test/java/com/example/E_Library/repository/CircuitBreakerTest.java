@@ -0,0 +1,148 @@
+package com.example.E_Library.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.E_Library.repository.CircuitBreaker.State;
+
+class CircuitBreakerTest {
+
+    private final List<String> transitions = new ArrayList<>();
+
+    // Window of 10, opens from 4 recorded calls at 50% failures
+    private CircuitBreaker breaker(long openMillis, int halfOpenCalls) {
+        return new CircuitBreaker(10, 4, 50, openMillis, halfOpenCalls,
+                (from, to) -> transitions.add(from + "->" + to));
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker(60_000, 1);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        assertThat(breaker.failureRate()).isEqualTo(-1);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = breaker(60_000, 1);
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+
+        // 2 of 4 failed: 50%
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(transitions).containsExactly("CLOSED->OPEN");
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.retryAfterSeconds()).isBetween(59L, 60L);
+    }
+
+    @Test
+    void staysClosedJustBelowThreshold() {
+        CircuitBreaker breaker = breaker(60_000, 1);
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onSuccess();
+
+        // 2 of 7 failed
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        assertThat(breaker.failureRate()).isEqualTo(200f / 7);
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = breaker(60_000, 1);
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+        breaker.onFailure();
+        for (int i = 0; i < 5; i++) {
+            breaker.onSuccess();
+        }
+        assertThat(breaker.failureRate()).isEqualTo(10f);
+
+        // Ten more calls push the failure out
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess();
+        }
+
+        assertThat(breaker.bufferedCalls()).isEqualTo(10);
+        assertThat(breaker.failureRate()).isEqualTo(0f);
+    }
+
+    @Test
+    void halfOpenLetsOnlyItsTrialCallsThrough() {
+        CircuitBreaker breaker = breaker(0, 2);
+        open(breaker);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN");
+    }
+
+    @Test
+    void halfOpenClosesOnceEveryTrialCallSucceeds() {
+        CircuitBreaker breaker = breaker(0, 2);
+        open(breaker);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        breaker.onSuccess();
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+        // Closing starts a fresh window
+        assertThat(breaker.bufferedCalls()).isZero();
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void halfOpenReopensOnFailure() {
+        CircuitBreaker breaker = breaker(0, 2);
+        open(breaker);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN");
+    }
+
+    @Test
+    void lateOutcomesDoNotMoveAnOpenCircuit() {
+        CircuitBreaker breaker = breaker(60_000, 1);
+        open(breaker);
+
+        // Outcome of a call that started while the circuit was closed
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+    }
+
+    private static void open(CircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.E_Library.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.example.E_Library.model.Book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(meterRegistry);
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void joinedAsyncCallersShareOneRead() {
+        String key = booksKey();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        AtomicInteger reads = new AtomicInteger();
+
+        CompletableFuture<String> first = singleFlight.runAsync(key, () -> {
+            reads.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = singleFlight.runAsync(key, () -> {
+            reads.incrementAndGet();
+            return CompletableFuture.completedFuture("second");
+        });
+        upstream.complete("rows");
+
+        assertThat(first.join()).isEqualTo("rows");
+        assertThat(second.join()).isEqualTo("rows");
+        assertThat(reads).hasValue(1);
+        assertThat(coalesced()).isEqualTo(1);
+    }
+
+    @Test
+    void joinedBlockingCallersShareOneRead() throws Exception {
+        String key = booksKey();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch answer = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+
+        Future<String> first = callers.submit(() -> singleFlight.run(key, () -> {
+            reads.incrementAndGet();
+            reading.countDown();
+            await(answer);
+            return "rows";
+        }));
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<String> second = callers.submit(() -> singleFlight.run(key, () -> {
+            reads.incrementAndGet();
+            return "second";
+        }));
+        // Only let the first read finish once the second caller is waiting on it
+        while (coalesced() == 0) {
+            Thread.sleep(1);
+        }
+        answer.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("rows");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("rows");
+        assertThat(reads).hasValue(1);
+    }
+
+    @Test
+    void differentReadsAreNotJoined() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        singleFlight.runAsync(singleFlight.key("books?book_id=eq.1", Map.of(), Book.class), () -> upstream);
+
+        CompletableFuture<String> other = singleFlight.runAsync(
+                singleFlight.key("books?book_id=eq.2", Map.of(), Book.class),
+                () -> CompletableFuture.completedFuture("other"));
+
+        assertThat(other.join()).isEqualTo("other");
+        assertThat(coalesced()).isZero();
+    }
+
+    @Test
+    void readsAfterAWriteDoNotJoinAnOlderFlight() {
+        String before = booksKey();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> stale = singleFlight.runAsync(before, () -> upstream);
+
+        singleFlight.writeCompleted("books?book_id=eq.1");
+        String after = booksKey();
+        CompletableFuture<String> fresh = singleFlight.runAsync(after,
+                () -> CompletableFuture.completedFuture("after write"));
+        upstream.complete("before write");
+
+        assertThat(after).isNotEqualTo(before);
+        assertThat(fresh.join()).isEqualTo("after write");
+        assertThat(stale.join()).isEqualTo("before write");
+        assertThat(coalesced()).isZero();
+    }
+
+    @Test
+    void writesToOtherEndpointsKeepTheFlight() {
+        String before = booksKey();
+        singleFlight.writeCompleted("book_categories");
+
+        assertThat(booksKey()).isEqualTo(before);
+    }
+
+    @Test
+    void oneCallerCancellingDoesNotFailTheOthers() {
+        String key = booksKey();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.runAsync(key, () -> upstream);
+        CompletableFuture<String> second = singleFlight.runAsync(key, () -> upstream);
+        CompletableFuture<String> third = singleFlight.runAsync(key, () -> upstream);
+
+        first.cancel(true);
+        second.cancel(true);
+        upstream.complete("rows");
+
+        assertThat(first).isCancelled();
+        assertThat(second).isCancelled();
+        assertThat(upstream).isCompleted();
+        assertThat(third.join()).isEqualTo("rows");
+    }
+
+    @Test
+    void failuresAreSharedButNotKept() {
+        String key = booksKey();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.runAsync(key, () -> upstream);
+        CompletableFuture<String> joined = singleFlight.runAsync(key, () -> upstream);
+
+        upstream.completeExceptionally(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThatThrownBy(first::join).hasCauseInstanceOf(HttpServerErrorException.class);
+        assertThatThrownBy(joined::join).hasCauseInstanceOf(HttpServerErrorException.class);
+        // The next caller starts a new read
+        assertThat(singleFlight.runAsync(key, () -> CompletableFuture.completedFuture("retry")).join())
+                .isEqualTo("retry");
+    }
+
+    @Test
+    void blockingFailuresAreNotKept() {
+        String key = booksKey();
+
+        assertThatThrownBy(() -> singleFlight.run(key, () -> {
+            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+        })).isInstanceOf(HttpServerErrorException.class);
+
+        assertThat(singleFlight.run(key, () -> "retry")).isEqualTo("retry");
+    }
+
+    @Test
+    void supplierThrowingFailsTheFlightAndClearsIt() {
+        String key = booksKey();
+
+        CompletableFuture<String> failed = singleFlight.runAsync(key, () -> {
+            throw new IllegalStateException("no request built");
+        });
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(singleFlight.runAsync(key, () -> CompletableFuture.completedFuture("retry")).join())
+                .isEqualTo("retry");
+    }
+
+    @Test
+    void callersReactingToTheResultStartANewRead() {
+        String key = booksKey();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        AtomicInteger reads = new AtomicInteger();
+        // Landed flights leave the map before their callers are completed
+        CompletableFuture<List<String>> followUp = singleFlight.runAsync(key, () -> upstream)
+                .thenCompose(first -> singleFlight.runAsync(key, () -> {
+                    reads.incrementAndGet();
+                    return CompletableFuture.completedFuture("second");
+                }).thenApply(second -> List.of(first, second)));
+
+        upstream.complete("first");
+
+        assertThat(followUp.join()).containsExactly("first", "second");
+        assertThat(reads).hasValue(1);
+    }
+
+    private String booksKey() {
+        return singleFlight.key("books?book_id=eq.1", Map.of(), Book.class);
+    }
+
+    private double coalesced() {
+        return meterRegistry.counter("supabase.calls.coalesced", "endpoint", "books").count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
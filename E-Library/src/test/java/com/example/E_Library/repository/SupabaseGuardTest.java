@@ -0,0 +1,193 @@
+package com.example.E_Library.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.example.E_Library.exceptions.SupabaseUnavailableException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SupabaseGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Up to 3 attempts with no backoff, so retries run at once
+    private SupabaseGuard guard(int minimumCalls, int maxConcurrentCalls) {
+        return new SupabaseGuard(20, minimumCalls, 50, 30, 1, maxConcurrentCalls, 3, 0, 0, meterRegistry);
+    }
+
+    @Test
+    void readsAreRetriedWhileSupabaseIsUnavailable() {
+        SupabaseGuard guard = guard(10, 5);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = guard.call(HttpMethod.GET, "books?book_id=eq.1", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.counter("supabase.calls.retried", "endpoint", "books").count()).isEqualTo(2);
+    }
+
+    @Test
+    void readsGiveUpAfterMaxAttempts() {
+        SupabaseGuard guard = guard(10, 5);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> guard.call(HttpMethod.GET, "books", () -> {
+            calls.incrementAndGet();
+            throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        })).isInstanceOf(HttpServerErrorException.class);
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void writesAreNeverRetried() {
+        SupabaseGuard guard = guard(10, 5);
+        for (HttpMethod method : List.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE)) {
+            AtomicInteger calls = new AtomicInteger();
+
+            assertThatThrownBy(() -> guard.call(method, "books", () -> {
+                calls.incrementAndGet();
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            })).isInstanceOf(HttpServerErrorException.class);
+            assertThat(calls).as(method.name()).hasValue(1);
+        }
+    }
+
+    @Test
+    void asyncWritesAreNeverRetried() {
+        SupabaseGuard guard = guard(10, 5);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = guard.callAsync(HttpMethod.POST, "books", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        });
+
+        assertThatThrownBy(result::join).hasCauseInstanceOf(HttpServerErrorException.class);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void clientErrorsAreNotRetriedAndCountAsSuccesses() {
+        SupabaseGuard guard = guard(2, 5);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> guard.call(HttpMethod.GET, "books", () -> {
+                calls.incrementAndGet();
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+            })).isInstanceOf(HttpClientErrorException.class);
+        }
+
+        assertThat(calls).hasValue(3);
+        assertThat(guard.endpoint("books").breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void openCircuitRefusesWithoutCallingOrRetrying() {
+        SupabaseGuard guard = guard(2, 5);
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> guard.call(HttpMethod.POST, "books", () -> {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            })).isInstanceOf(HttpServerErrorException.class);
+        }
+        assertThat(guard.endpoint("books").breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> guard.call(HttpMethod.GET, "books", calls::incrementAndGet))
+                .isInstanceOf(SupabaseUnavailableException.class);
+        assertThat(calls).hasValue(0);
+        assertThat(meterRegistry.counter("supabase.calls.rejected", "endpoint", "books", "reason", "circuit-open")
+                .count()).isEqualTo(1);
+        // Other endpoints have their own circuit
+        assertThat(guard.call(HttpMethod.GET, "users", () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void bulkheadPermitIsHeldAcrossRetriesAndReleasedOnce() {
+        SupabaseGuard guard = guard(10, 2);
+        SupabaseGuard.Endpoint books = guard.endpoint("books");
+        AtomicInteger calls = new AtomicInteger();
+
+        guard.call(HttpMethod.GET, "books", () -> {
+            assertThat(books.inFlight()).isEqualTo(1);
+            if (calls.incrementAndGet() < 3) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return "ok";
+        });
+        assertThat(books.inFlight()).isZero();
+
+        assertThatThrownBy(() -> guard.call(HttpMethod.GET, "books", () -> {
+            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+        })).isInstanceOf(HttpServerErrorException.class);
+        assertThat(books.inFlight()).isZero();
+        assertThat(books.bulkhead.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void asyncBulkheadPermitIsReleasedOnceAfterRetries() {
+        SupabaseGuard guard = guard(10, 2);
+        SupabaseGuard.Endpoint books = guard.endpoint("books");
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = guard.callAsync(HttpMethod.GET, "books", () -> {
+            assertThat(books.inFlight()).isEqualTo(1);
+            return calls.incrementAndGet() < 3
+                    ? CompletableFuture.failedFuture(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE))
+                    : CompletableFuture.completedFuture("ok");
+        });
+
+        assertThat(result.join()).isEqualTo("ok");
+        assertThat(calls).hasValue(3);
+        assertThat(books.inFlight()).isZero();
+        assertThat(books.bulkhead.availablePermits()).isEqualTo(2);
+
+        CompletableFuture<String> failed = guard.callAsync(HttpMethod.GET, "books",
+                () -> CompletableFuture.failedFuture(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE)));
+        assertThatThrownBy(failed::join).isInstanceOf(CompletionException.class);
+        assertThat(books.bulkhead.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void fullBulkheadRejectsWithoutTakingAPermit() {
+        SupabaseGuard guard = guard(10, 1);
+        SupabaseGuard.Endpoint books = guard.endpoint("books");
+
+        guard.call(HttpMethod.GET, "books", () -> {
+            assertThatThrownBy(() -> guard.call(HttpMethod.GET, "books", () -> "nested"))
+                    .isInstanceOf(SupabaseUnavailableException.class);
+            assertThat(guard.callAsync(HttpMethod.GET, "books", () -> CompletableFuture.completedFuture("nested")))
+                    .isCompletedExceptionally();
+            return "ok";
+        });
+
+        assertThat(books.bulkhead.availablePermits()).isEqualTo(1);
+        assertThat(meterRegistry.counter("supabase.calls.rejected", "endpoint", "books", "reason", "bulkhead-full")
+                .count()).isEqualTo(2);
+    }
+
+    @Test
+    void endpointIsTheTableName() {
+        assertThat(SupabaseGuard.endpointOf("books?book_id=eq.1")).isEqualTo("books");
+        assertThat(SupabaseGuard.endpointOf("book_categories")).isEqualTo("book_categories");
+        assertThat(SupabaseGuard.endpointOf("users/1")).isEqualTo("users");
+    }
+}
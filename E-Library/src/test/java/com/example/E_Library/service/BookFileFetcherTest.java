@@ -0,0 +1,158 @@
+package com.example.E_Library.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.E_Library.configuration.WorkerThreads;
+import com.example.E_Library.utils.FileUrlRewriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BookFileFetcherTest {
+
+    private static final byte[] CONTENT = "%PDF-1.4 remote".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path uploads;
+
+    private final CountDownLatch respond = new CountDownLatch(1);
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private HttpServer server;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private UploadStore uploadStore;
+    private BookFileFetcher fetcher;
+    private String remoteUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Answers once the test lets it, so an open can be discarded while it is still connecting
+        server.createContext("/files/book.pdf", exchange -> {
+            try {
+                respond.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(CONTENT);
+            }
+        });
+        server.setExecutor(handlers);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        remoteUrl = base + "/files/book.pdf";
+
+        // One connection: if a discarded open kept it, the next open could not get one
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(1)
+                .setMaxConnPerRoute(1)
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofSeconds(2))
+                        .build())
+                .build();
+        uploadStore = new UploadStore(uploads.toString(), base);
+        fetcher = new BookFileFetcher(uploadStore, new FileUrlRewriter(base, new ObjectMapper()), httpClient, 2, 16,
+                new WorkerThreads(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fetcher.shutdown();
+        httpClient.close();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void remoteFileIsStreamed() throws Exception {
+        respond.countDown();
+
+        try (InputStream in = fetcher.open(remoteUrl).get(5, TimeUnit.SECONDS)) {
+            assertThat(in.readAllBytes()).isEqualTo(CONTENT);
+        }
+        assertThat(connectionManager.getTotalStats().getLeased()).isZero();
+    }
+
+    @Test
+    void discardWhileConnectingReturnsTheConnection() throws Exception {
+        CompletableFuture<InputStream> opening = fetcher.open(remoteUrl);
+        fetcher.discard(opening);
+        respond.countDown();
+
+        assertThat(opening).isCancelled();
+        // Only possible once the opening task has closed the response it could not deliver
+        assertThat(read(fetcher.open(remoteUrl))).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void discardAfterOpenClosesTheStream() throws Exception {
+        respond.countDown();
+        CompletableFuture<InputStream> opened = fetcher.open(remoteUrl);
+        opened.get(5, TimeUnit.SECONDS);
+
+        fetcher.discard(opened);
+
+        assertThat(connectionManager.getTotalStats().getLeased()).isZero();
+        assertThat(read(fetcher.open(remoteUrl))).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void failedOpenHoldsNoConnection() throws Exception {
+        respond.countDown();
+        CompletableFuture<InputStream> missing = fetcher.open(remoteUrl.replace("book.pdf", "missing.pdf"));
+
+        assertThatThrownBy(() -> missing.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+        fetcher.discard(missing);
+        assertThat(read(fetcher.open(remoteUrl))).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void uploadedFilesAreReadFromDisk() throws Exception {
+        UploadStore.StoredFile stored = uploadStore.store(new ByteArrayInputStream(CONTENT));
+
+        CompletableFuture<InputStream> opened = fetcher.open(stored.url());
+
+        assertThat(opened).isCompleted();
+        assertThat(read(opened)).isEqualTo(CONTENT);
+    }
+
+    private static byte[] read(CompletableFuture<InputStream> opening) throws Exception {
+        try (InputStream in = opening.get(5, TimeUnit.SECONDS)) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.E_Library.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.E_Library.model.Book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BookSearchIndexTest {
+
+    private final BookSearchIndex index = new BookSearchIndex(new SimpleMeterRegistry());
+
+    @Test
+    void titleOutranksAuthorOutranksDescription() {
+        // One word per field everywhere, so length normalisation is the same for every book
+        index.load(List.of(
+                book(1, "moon", "bob", "river"),
+                book(2, "stone", "river", "calm"),
+                book(3, "river", "ann", "quiet"),
+                book(4, "sea", "eve", "storm")));
+
+        BookSearchIndex.Result result = index.search("river", 0, 10);
+
+        assertThat(ids(result)).containsExactly(3, 2, 1);
+        assertThat(result.total()).isEqualTo(3);
+    }
+
+    @Test
+    void onlyTheLastWordMatchesAsAPrefix() {
+        index.load(List.of(
+                book(1, "River stone", "Ann", ""),
+                book(2, "Stone garden", "Bob", "")));
+
+        assertThat(ids(index.search("riv", 0, 10))).containsExactly(1);
+        assertThat(ids(index.search("garden sto", 0, 10))).containsExactly(2, 1);
+        // "riv" is not the last word, so it must match a whole term
+        assertThat(ids(index.search("riv garden", 0, 10))).containsExactly(2);
+        assertThat(index.search("riv garden", 0, 10).total()).isEqualTo(1);
+    }
+
+    @Test
+    void everyWordAddsToTheScore() {
+        index.load(List.of(
+                book(1, "Ancient river", "Ann", ""),
+                book(2, "Ancient stone", "Bob", ""),
+                book(3, "Ancient river stone", "Eve", "")));
+
+        assertThat(ids(index.search("ancient river stone", 0, 10)).get(0)).isEqualTo(3);
+    }
+
+    @Test
+    void pagesSliceTheRankingAndReportTheTotal() {
+        index.load(List.of(
+                book(5, "Common", "", ""),
+                book(3, "Common", "", ""),
+                book(1, "Common", "", ""),
+                book(4, "Common", "", ""),
+                book(2, "Common", "", ""),
+                book(6, "Other", "", "")));
+
+        // Equal scores go in book_id order, so pages neither overlap nor skip
+        assertThat(ids(index.search("common", 0, 2))).containsExactly(1, 2);
+        assertThat(ids(index.search("common", 2, 2))).containsExactly(3, 4);
+        assertThat(ids(index.search("common", 4, 2))).containsExactly(5);
+        assertThat(index.search("common", 4, 2).total()).isEqualTo(5);
+        assertThat(index.search("common", 10, 2).items()).isEmpty();
+        assertThat(index.search("common", 10, 2).total()).isEqualTo(5);
+    }
+
+    @Test
+    void blankQueryPagesThroughEveryBook() {
+        index.load(List.of(book(3, "C", "", ""), book(1, "A", "", ""), book(2, "B", "", "")));
+
+        BookSearchIndex.Result result = index.search("  ", 1, 5);
+
+        assertThat(ids(result)).containsExactly(2, 3);
+        assertThat(result.total()).isEqualTo(3);
+    }
+
+    @Test
+    void updateLeavesNoPostingsForTheOldText() {
+        index.load(List.of(book(1, "Old title", "Ann", "First edition"), book(2, "Other", "Bob", "")));
+        int terms = index.termCount();
+
+        index.index(book(1, "New heading", "Ann", "First edition"));
+
+        assertThat(index.search("old", 0, 10).total()).isZero();
+        assertThat(index.search("title", 0, 10).total()).isZero();
+        assertThat(ids(index.search("heading", 0, 10))).containsExactly(1);
+        assertThat(ids(index.search("edition", 0, 10))).containsExactly(1);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.termCount()).isEqualTo(terms);
+    }
+
+    @Test
+    void removeLeavesNoPostings() {
+        index.load(List.of(book(1, "Lonely title", "Ann", ""), book(2, "Other", "Ann", "")));
+
+        index.remove(1);
+
+        assertThat(index.search("lonely", 0, 10).total()).isZero();
+        assertThat(ids(index.search("ann", 0, 10))).containsExactly(2);
+        assertThat(index.size()).isEqualTo(1);
+        // Only "other" and "ann" are left
+        assertThat(index.termCount()).isEqualTo(2);
+    }
+
+    @Test
+    void reusedSlotsOnlyFindTheNewBook() {
+        index.load(List.of(book(1, "Gone", "Ann", ""), book(2, "Stays", "Bob", "")));
+
+        // Book 1's ordinal and term slots are freed and taken by book 3; book_id 1 comes back as a new book
+        index.remove(1);
+        index.index(book(3, "Newcomer", "Eve", ""));
+        index.index(book(1, "Returned", "Zoe", ""));
+
+        assertThat(index.search("gone", 0, 10).total()).isZero();
+        assertThat(index.search("ann", 0, 10).total()).isZero();
+        assertThat(ids(index.search("newcomer", 0, 10))).containsExactly(3);
+        assertThat(ids(index.search("returned", 0, 10))).containsExactly(1);
+        assertThat(index.search("returned", 0, 10).items().get(0).getAuthor()).isEqualTo("Zoe");
+        assertThat(ids(index.search("", 0, 10))).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void fuzzyMatchesOneTypoInAMediumWord() {
+        index.load(List.of(book(1, "Ancient history", "Ann", ""), book(2, "Modern art", "Bob", "")));
+
+        // Transposition, insertion and deletion each count as one edit
+        assertThat(ids(index.search("ancinet", 0, 10, true))).containsExactly(1);
+        assertThat(ids(index.search("anciennt", 0, 10, true))).containsExactly(1);
+        assertThat(ids(index.search("ancint", 0, 10, true))).containsExactly(1);
+        assertThat(ids(index.search("modren art", 0, 10, true))).containsExactly(2);
+        // Without fuzzy mode a typo matches nothing
+        assertThat(index.search("ancinet", 0, 10).total()).isZero();
+    }
+
+    @Test
+    void fuzzyMatchesTwoTyposInALongWord() {
+        index.load(List.of(book(1, "Encyclopedia", "Ann", "")));
+
+        assertThat(ids(index.search("encyclopdeai", 0, 10, true))).containsExactly(1);
+        assertThat(ids(index.search("enciclopeda", 0, 10, true))).containsExactly(1);
+    }
+
+    @Test
+    void fuzzyRejectsWordsBeyondTheEditBudget() {
+        index.load(List.of(book(1, "Ancient", "Ann", ""), book(2, "Encyclopedia", "Bob", "")));
+
+        assertThat(index.search("ancnt", 0, 10, true).total()).isZero();
+        assertThat(index.search("axcieny", 0, 10, true).total()).isZero();
+        assertThat(index.search("enxyclopxdai", 0, 10, true).total()).isZero();
+    }
+
+    @Test
+    void shortWordsMustMatchExactly() {
+        index.load(List.of(book(1, "The cat", "Ann", ""), book(2, "A car", "Bob", "")));
+
+        // Last word still matches as a prefix, but "cat" never reaches "car"
+        assertThat(ids(index.search("cat", 0, 10, true))).containsExactly(1);
+        assertThat(ids(index.search("car", 0, 10, true))).containsExactly(2);
+        assertThat(index.search("cer", 0, 10, true).total()).isZero();
+        assertThat(BookSearchIndex.maxEdits("cat")).isZero();
+        assertThat(BookSearchIndex.maxEdits("cats")).isEqualTo(1);
+        assertThat(BookSearchIndex.maxEdits("historic")).isEqualTo(2);
+    }
+
+    @Test
+    void exactMatchOutranksFuzzyMatch() {
+        index.load(List.of(book(1, "Rivet", "Ann", ""), book(2, "River", "Bob", "")));
+
+        assertThat(ids(index.search("river", 0, 10, true))).containsExactly(2, 1);
+        assertThat(ids(index.search("rivet", 0, 10, true))).containsExactly(1, 2);
+    }
+
+    @Test
+    void fuzzyFindsTermsThatReusedFreedSlots() {
+        index.load(List.of(book(1, "Gardening", "Ann", ""), book(2, "Other", "Bob", "")));
+
+        index.remove(1);
+        index.index(book(3, "Woodworking", "Eve", ""));
+
+        assertThat(index.search("gardnening", 0, 10, true).total()).isZero();
+        assertThat(ids(index.search("woodwroking", 0, 10, true))).containsExactly(3);
+    }
+
+    @Test
+    void editDistanceCountsTranspositionsAsOneEdit() {
+        assertThat(BookSearchIndex.editDistance("ancinet", "ancient", 2)).isEqualTo(1);
+        assertThat(BookSearchIndex.editDistance("ancient", "ancient", 2)).isZero();
+        assertThat(BookSearchIndex.editDistance("ancnt", "ancient", 2)).isEqualTo(2);
+        // Gives up at max + 1
+        assertThat(BookSearchIndex.editDistance("abcdef", "uvwxyz", 2)).isEqualTo(3);
+    }
+
+    static Book book(int id, String title, String author, String description) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setDescription(description);
+        return book;
+    }
+
+    static List<Integer> ids(BookSearchIndex.Result result) {
+        return result.items().stream().map(Book::getBook_id).toList();
+    }
+}
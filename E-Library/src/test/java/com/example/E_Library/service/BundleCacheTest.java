@@ -0,0 +1,182 @@
+package com.example.E_Library.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.repository.BookRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BundleCacheTest {
+
+    private static final byte[] ARCHIVE = "PK archive bytes".getBytes(StandardCharsets.UTF_8);
+
+    // Writes ARCHIVE in two halves, optionally waiting in between, and counts builds
+    private static final class StubBundleService extends BookBundleService {
+        final AtomicInteger builds = new AtomicInteger();
+        final CountDownLatch halfWritten = new CountDownLatch(1);
+        volatile CountDownLatch finishGate = new CountDownLatch(0);
+        volatile boolean complete = true;
+
+        StubBundleService() {
+            super(mock(BookRepository.class), mock(BookFileFetcher.class), mock(SuggestionIndex.class));
+        }
+
+        @Override
+        public boolean write(Bundle bundle, OutputStream out, Progress progress) throws IOException {
+            builds.incrementAndGet();
+            int half = ARCHIVE.length / 2;
+            out.write(ARCHIVE, 0, half);
+            out.flush();
+            halfWritten.countDown();
+            try {
+                finishGate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            out.write(ARCHIVE, half, ARCHIVE.length - half);
+            progress.entryWritten(bundle.books().size(), 0, bundle.books().size());
+            return complete;
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    private final StubBundleService bundles = new StubBundleService();
+
+    @Test
+    void secondRequestIsServedFromTheCachedFile() throws IOException {
+        BundleCache cache = cache();
+
+        assertThat(serve(cache, bundle(1, "/uploads/1.pdf"))).isEqualTo(ARCHIVE);
+        assertThat(serve(cache, bundle(1, "/uploads/1.pdf"))).isEqualTo(ARCHIVE);
+
+        assertThat(bundles.builds).hasValue(1);
+        assertThat(files(".zip")).isEqualTo(1);
+    }
+
+    @Test
+    void changedBookIsBuiltAgain() throws IOException {
+        BundleCache cache = cache();
+
+        serve(cache, bundle(1, "/uploads/1.pdf"));
+        serve(cache, bundle(1, "/uploads/1-reuploaded.pdf"));
+
+        assertThat(bundles.builds).hasValue(2);
+    }
+
+    @Test
+    void concurrentMissWaitsForTheBuildInProgress() throws Exception {
+        BundleCache cache = cache();
+        bundles.finishGate = new CountDownLatch(1);
+        BookBundleService.Bundle bundle = bundle(1, "/uploads/1.pdf");
+        CompletableFuture<byte[]> first = CompletableFuture.supplyAsync(() -> serveUnchecked(cache, bundle));
+        assertThat(bundles.halfWritten.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<byte[]> second = CompletableFuture.supplyAsync(() -> serveUnchecked(cache, bundle));
+        // Give the second request time to find the build in flight; it must not start its own
+        Thread.sleep(100);
+        assertThat(second).isNotDone();
+        bundles.finishGate.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(ARCHIVE);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(ARCHIVE);
+        assertThat(bundles.builds).hasValue(1);
+    }
+
+    @Test
+    void incompleteBuildIsSentButNotCached() throws IOException {
+        BundleCache cache = cache();
+        bundles.complete = false;
+
+        assertThat(serve(cache, bundle(1, "/uploads/1.pdf"))).isEqualTo(ARCHIVE);
+        assertThat(serve(cache, bundle(1, "/uploads/1.pdf"))).isEqualTo(ARCHIVE);
+
+        assertThat(bundles.builds).hasValue(2);
+        assertThat(files(".zip")).isZero();
+        assertThat(files(".part")).isZero();
+    }
+
+    @Test
+    void buildFinishesIntoTheCacheWhenTheClientGoesAway() throws IOException {
+        BundleCache cache = cache();
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> cache.serve(bundle(1, "/uploads/1.pdf"), broken)).hasMessage("Broken pipe");
+
+        assertThat(serve(cache, bundle(1, "/uploads/1.pdf"))).isEqualTo(ARCHIVE);
+        assertThat(bundles.builds).hasValue(1);
+    }
+
+    @Test
+    void startupDropsPartFilesAndKeepsFinishedBundles() throws IOException {
+        BookBundleService.Bundle bundle = bundle(1, "/uploads/1.pdf");
+        String key = BundleCache.key(bundle);
+        Files.write(directory.resolve(key + "-old.zip"), ARCHIVE);
+        Files.write(directory.resolve(key + "-crashed.part"), new byte[] {1, 2, 3});
+
+        BundleCache cache = cache();
+
+        assertThat(files(".part")).isZero();
+        assertThat(serve(cache, bundle)).isEqualTo(ARCHIVE);
+        assertThat(bundles.builds).hasValue(0);
+    }
+
+    private BundleCache cache() throws IOException {
+        return new BundleCache(bundles, directory.toString(), 1 << 20, 1, new SimpleMeterRegistry());
+    }
+
+    private static byte[] serve(BundleCache cache, BookBundleService.Bundle bundle) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.serve(bundle, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] serveUnchecked(BundleCache cache, BookBundleService.Bundle bundle) {
+        try {
+            return serve(cache, bundle);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).count();
+        }
+    }
+
+    private static BookBundleService.Bundle bundle(int bookId, String fileUrl) {
+        Book book = new Book();
+        book.setBook_id(bookId);
+        book.setTitle("Book " + bookId);
+        book.setAuthor("Author");
+        book.setFile_url(fileUrl);
+        return new BookBundleService.Bundle(List.of(book), List.of());
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.E_Library.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.E_Library.configuration.WorkerThreads;
+import com.example.E_Library.exceptions.ResourceNotFoundException;
+import com.example.E_Library.exceptions.TooManyRequestsException;
+import com.example.E_Library.model.Book;
+import com.example.E_Library.model.BundleJobStatus;
+import com.example.E_Library.repository.BookRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BundleJobServiceTest {
+
+    @TempDir
+    Path root;
+
+    private final BookFileFetcher fetcher = mock(BookFileFetcher.class);
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private BundleCache bundleCache;
+    private BundleJobService jobs;
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        if (jobs != null) {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    void cancelWhileQueuedFreesTheSlotAtOnce() throws Exception {
+        start(1, 1, 60);
+        fetchReturns("/uploads/1.pdf", this::blocked);
+        fetchReturns("/uploads/2.pdf", () -> content("second"));
+        jobs.submit("a", bundle(1));
+        BundleJobStatus queued = jobs.submit("b", bundle(2));
+
+        BundleJobStatus cancelled = jobs.cancel("b", queued.getJob_id());
+
+        assertThat(cancelled.getState()).isEqualTo("CANCELLED");
+        assertThat(jobs.whenFinished("b", queued.getJob_id()).get(1, TimeUnit.SECONDS).getState())
+                .isEqualTo("CANCELLED");
+        // The one allowed job is free again; this one runs once the first build is let go
+        BundleJobStatus next = jobs.submit("b", bundle(2));
+        unblock.countDown();
+        assertThat(finished("b", next).getState()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void cancelStopsARunningBuildOnACacheMiss() throws Exception {
+        start(1, 1, 60);
+        fetchReturns("/uploads/1.pdf", BundleJobServiceTest::endless);
+        BundleJobStatus job = jobs.submit("a", bundle(1));
+        awaitTrue(() -> jobs.status("a", job.getJob_id()).getBytes_written() > 0);
+
+        jobs.cancel("a", job.getJob_id());
+
+        // BundleCache keeps writing its own file when the job's stream fails, so only the progress check stops this
+        assertThat(finished("a", job).getState()).isEqualTo("CANCELLED");
+        assertThat(jobs.artifact("a", job.getJob_id())).isNull();
+        awaitTrue(() -> files(root.resolve("bundles")) == 0);
+        fetchReturns("/uploads/2.pdf", () -> content("second"));
+        assertThat(finished("a", jobs.submit("a", bundle(2))).getState()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void ownerIsLimitedToMaxPerUserUnfinishedJobs() {
+        start(2, 2, 60);
+        fetchReturns("/uploads/1.pdf", this::blocked);
+        jobs.submit("a", bundle(1));
+        jobs.submit("a", bundle(1));
+
+        assertThatThrownBy(() -> jobs.submit("a", bundle(1))).isInstanceOf(TooManyRequestsException.class);
+        // Other users are not affected
+        assertThat(jobs.submit("b", bundle(1)).getState()).isEqualTo("QUEUED");
+    }
+
+    @Test
+    void failedBuildReleasesTheSlot() throws Exception {
+        start(1, 1, 60);
+        when(fetcher.open("/uploads/1.pdf")).thenThrow(new IllegalStateException("Fetch pool shut down"));
+        BundleJobStatus job = jobs.submit("a", bundle(1));
+
+        BundleJobStatus failed = finished("a", job);
+
+        assertThat(failed.getState()).isEqualTo("FAILED");
+        assertThat(failed.getError()).isEqualTo("Could not build the archive");
+        fetchReturns("/uploads/2.pdf", () -> content("second"));
+        assertThat(finished("a", jobs.submit("a", bundle(2))).getState()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void cancellingAFinishedJobDeletesItsArchive() throws Exception {
+        start(1, 1, 60);
+        fetchReturns("/uploads/1.pdf", () -> content("first"));
+        BundleJobStatus job = jobs.submit("a", bundle(1));
+        assertThat(finished("a", job).getDownload_url()).endsWith("/" + job.getJob_id() + "/file");
+        Path archive = jobs.artifact("a", job.getJob_id());
+        assertThat(archive).exists();
+
+        jobs.cancel("a", job.getJob_id());
+
+        awaitTrue(() -> Files.notExists(archive));
+        assertThatThrownBy(() -> jobs.status("a", job.getJob_id())).isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void archiveIsDeletedWhenTheFinishedJobExpires() throws Exception {
+        // A zero TTL expires jobs as soon as they finish; unfinished ones never expire
+        start(1, 1, 0);
+        fetchReturns("/uploads/1.pdf", () -> content("first"));
+        BundleJobStatus job = jobs.submit("a", bundle(1));
+
+        assertThat(finished("a", job).getState()).isEqualTo("COMPLETED");
+
+        awaitTrue(() -> files(root.resolve("jobs")) == 0);
+        assertThatThrownBy(() -> jobs.status("a", job.getJob_id())).isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    private void start(int threads, int maxPerUser, long ttlMinutes) {
+        try {
+            when(fetcher.prefetch()).thenReturn(1);
+            BookBundleService bundles = new BookBundleService(mock(BookRepository.class), fetcher,
+                    mock(SuggestionIndex.class));
+            bundleCache = new BundleCache(bundles, root.resolve("bundles").toString(), 1 << 20, 1,
+                    new SimpleMeterRegistry());
+            jobs = new BundleJobService(bundleCache, root.resolve("jobs").toString(), threads, 4, maxPerUser,
+                    ttlMinutes, new WorkerThreads(), new SimpleMeterRegistry());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface StreamSource {
+        InputStream open() throws IOException;
+    }
+
+    private void fetchReturns(String fileUrl, StreamSource source) {
+        when(fetcher.open(fileUrl)).thenAnswer(invocation -> CompletableFuture.completedFuture(source.open()));
+    }
+
+    private BundleJobStatus finished(String owner, BundleJobStatus job) throws Exception {
+        return jobs.whenFinished(owner, job.getJob_id()).get(5, TimeUnit.SECONDS);
+    }
+
+    private static BookBundleService.Bundle bundle(int bookId) {
+        Book book = new Book();
+        book.setBook_id(bookId);
+        book.setTitle("Book " + bookId);
+        book.setAuthor("Author");
+        book.setFile_url("/uploads/" + bookId + ".pdf");
+        return new BookBundleService.Bundle(List.of(book), List.of());
+    }
+
+    private static InputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes());
+    }
+
+    // A file whose first read waits until the test lets it through
+    private InputStream blocked() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    unblock.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+        };
+    }
+
+    // A file that never ends and, like a local disk read, ignores interrupts
+    private static InputStream endless() {
+        return new InputStream() {
+            @Override
+            public int read() {
+                return 'x';
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                return len;
+            }
+        };
+    }
+
+    private static long files(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
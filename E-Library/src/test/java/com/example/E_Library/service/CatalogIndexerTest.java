@@ -0,0 +1,89 @@
+package com.example.E_Library.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.E_Library.model.Book;
+import com.example.E_Library.repository.BookRepository;
+
+class CatalogIndexerTest {
+
+    // Book id to title, enough to see which copy of a book an index holds
+    private static final class RecordingIndex implements CatalogIndex {
+        final Map<Integer, String> titles = new TreeMap<>();
+
+        @Override
+        public synchronized void load(List<Book> books) {
+            titles.clear();
+            books.forEach(this::index);
+        }
+
+        @Override
+        public synchronized void index(Book book) {
+            titles.put(book.getBook_id(), book.getTitle());
+        }
+
+        @Override
+        public synchronized void remove(Integer bookId) {
+            titles.remove(bookId);
+        }
+    }
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final RecordingIndex index = new RecordingIndex();
+    private final CatalogIndexer indexer = new CatalogIndexer(bookRepository, List.of(index), 60);
+
+    @Test
+    void writesDuringALoadAreNotLost() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch snapshotTaken = new CountDownLatch(1);
+        // The snapshot predates the writes below: it still has book 2 and the old title of book 1
+        when(bookRepository.findAll()).thenAnswer(invocation -> {
+            reading.countDown();
+            snapshotTaken.await(5, TimeUnit.SECONDS);
+            return List.of(book(1, "Old title"), book(2, "Deleted"));
+        });
+        CompletableFuture<Void> loading = CompletableFuture.runAsync(indexer::reload);
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        indexer.index(book(1, "New title"));
+        indexer.index(book(3, "Added"));
+        indexer.remove(2);
+        snapshotTaken.countDown();
+        loading.get(5, TimeUnit.SECONDS);
+
+        assertThat(indexer.isReady()).isTrue();
+        assertThat(index.titles).isEqualTo(Map.of(1, "New title", 3, "Added"));
+    }
+
+    @Test
+    void failedLoadStopsRecordingWrites() throws Exception {
+        when(bookRepository.findAll()).thenThrow(new IllegalStateException("Supabase is down"))
+                .thenReturn(List.of(book(1, "Loaded")));
+
+        indexer.reload();
+        indexer.index(book(2, "Live"));
+        assertThat(index.titles).isEqualTo(Map.of(2, "Live"));
+
+        indexer.reload();
+        // Written before this load began, so the snapshot is the source of truth
+        assertThat(index.titles).isEqualTo(Map.of(1, "Loaded"));
+    }
+
+    private static Book book(int id, String title) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(title);
+        return book;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.E_Library.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.example.E_Library.exceptions.ResourceNotFoundException;
+import com.example.E_Library.exceptions.UploadConflictException;
+import com.example.E_Library.model.Book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ChunkedUploadServiceTest {
+
+    private static final String OWNER = "admin";
+    private static final long MAX_BYTES = 64;
+
+    @TempDir
+    Path uploads;
+
+    private UploadStore uploadStore;
+    private SupabaseService supabaseService;
+    private ChunkedUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        uploadStore = new UploadStore(uploads.toString(), "http://localhost");
+        supabaseService = mock(SupabaseService.class);
+        when(supabaseService.deleteUnreferencedFile(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        service = new ChunkedUploadService(uploadStore, supabaseService, MAX_BYTES, 1, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void chunkAtTheWrongOffsetIsAConflict() throws Exception {
+        String id = create(null, null);
+        append(id, 0, "hello");
+
+        assertThatThrownBy(() -> append(id, 3, "world"))
+                .isInstanceOfSatisfying(UploadConflictException.class,
+                        e -> assertThat(e.getCurrentOffset()).isEqualTo(5));
+        assertThat(service.status(OWNER, id).getOffset()).isEqualTo(5);
+    }
+
+    @Test
+    void checksumMismatchCutsTheFileBackToTheChunkStart() throws Exception {
+        String id = create(null, null);
+        append(id, 0, "hello");
+
+        assertThatThrownBy(() -> service.append(OWNER, id, 5, checksum("something else"), body(" world")))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(service.status(OWNER, id).getOffset()).isEqualTo(5);
+        assertThat(incomingFileSizes()).isEqualTo(5);
+        // The same chunk with its own checksum goes in, and the file's hash still adds up
+        service.append(OWNER, id, 5, checksum(" world"), body(" world"));
+        assertThat(storedContent(complete(id))).isEqualTo("hello world");
+    }
+
+    @Test
+    void uploadCannotGrowPastItsDeclaredSize() throws Exception {
+        String id = create(8L, null);
+        append(id, 0, "1234");
+
+        assertThatThrownBy(() -> append(id, 4, "56789"))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(service.status(OWNER, id).getOffset()).isEqualTo(4);
+        assertThat(incomingFileSizes()).isEqualTo(4);
+        assertThatThrownBy(() -> complete(id)).isInstanceOf(UploadConflictException.class);
+    }
+
+    @Test
+    void uploadWithoutASizeIsCappedAtMaxBytes() throws Exception {
+        assertThatThrownBy(() -> create(MAX_BYTES + 1, null)).isInstanceOf(IllegalArgumentException.class);
+        String id = create(null, null);
+
+        assertThatThrownBy(() -> append(id, 0, "x".repeat((int) MAX_BYTES + 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.status(OWNER, id).getOffset()).isZero();
+    }
+
+    @Test
+    void droppedChunkCanBeResentFromTheReportedOffset() throws Exception {
+        String content = "first chunk, second chunk";
+        String id = create((long) content.length(), sha256(content));
+        append(id, 0, "first chunk, ");
+
+        // The connection drops after part of the second chunk arrived
+        InputStream dropped = new InputStream() {
+            private final InputStream part = body("sec");
+
+            @Override
+            public int read() throws IOException {
+                int b = part.read();
+                if (b < 0) {
+                    throw new IOException("Connection reset");
+                }
+                return b;
+            }
+        };
+        assertThatThrownBy(() -> service.append(OWNER, id, 13, null, dropped)).isInstanceOf(IOException.class);
+
+        assertThat(service.status(OWNER, id).getOffset()).isEqualTo(13);
+        append(id, 13, "second chunk");
+        assertThat(storedContent(complete(id))).isEqualTo(content);
+    }
+
+    @Test
+    void completeCanBeRetriedAfterTheInsertFails() throws Exception {
+        String id = create(null, null);
+        append(id, 0, "book");
+        when(supabaseService.addBook(any(Book.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE))
+                .thenReturn("[{\"book_id\":1}]");
+
+        Book first = new Book();
+        assertThatThrownBy(() -> service.complete(OWNER, id, first)).isInstanceOf(HttpServerErrorException.class);
+        // The file stays in the store for the retry, and the upload takes no more chunks
+        assertThat(uploadStore.localFile(first.getFile_url())).isNotNull();
+        assertThatThrownBy(() -> append(id, 4, "more")).isInstanceOf(UploadConflictException.class);
+
+        Book retry = new Book();
+        assertThat(service.complete(OWNER, id, retry)).isEqualTo("[{\"book_id\":1}]");
+
+        assertThat(retry.getFile_url()).isEqualTo(first.getFile_url());
+        assertThat(storedContent(retry.getFile_url())).isEqualTo("book");
+        assertThatThrownBy(() -> service.status(OWNER, id)).isInstanceOf(ResourceNotFoundException.class);
+        verify(supabaseService, after(300).never()).deleteUnreferencedFile(anyString());
+    }
+
+    @Test
+    void abortAfterAFailedInsertCleansUpTheStoredFile() throws Exception {
+        String id = create(null, null);
+        append(id, 0, "book");
+        when(supabaseService.addBook(any(Book.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        Book book = new Book();
+        assertThatThrownBy(() -> service.complete(OWNER, id, book)).isInstanceOf(HttpServerErrorException.class);
+
+        service.abort(OWNER, id);
+
+        verify(supabaseService, timeout(1000)).deleteUnreferencedFile(book.getFile_url());
+    }
+
+    @Test
+    void abortWhileCompletingIsAConflict() throws Exception {
+        String id = create(null, null);
+        append(id, 0, "book");
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch answer = new CountDownLatch(1);
+        when(supabaseService.addBook(any(Book.class))).thenAnswer(invocation -> {
+            inserting.countDown();
+            answer.await(5, TimeUnit.SECONDS);
+            return "[]";
+        });
+        CompletableFuture<String> completing = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.complete(OWNER, id, new Book());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(inserting.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> service.abort(OWNER, id)).isInstanceOf(UploadConflictException.class);
+
+        answer.countDown();
+        assertThat(completing.get(5, TimeUnit.SECONDS)).isEqualTo("[]");
+        verify(supabaseService, never()).deleteUnreferencedFile(anyString());
+    }
+
+    private String create(Long size, String sha256) throws IOException {
+        return service.create(OWNER, size, sha256).getUpload_id();
+    }
+
+    private void append(String id, long offset, String chunk) throws IOException {
+        service.append(OWNER, id, offset, null, body(chunk));
+    }
+
+    private String complete(String id) throws IOException {
+        Book book = new Book();
+        when(supabaseService.addBook(book)).thenReturn("[]");
+        service.complete(OWNER, id, book);
+        return book.getFile_url();
+    }
+
+    private String storedContent(String fileUrl) throws IOException {
+        return Files.readString(uploadStore.localFile(fileUrl));
+    }
+
+    // Size of the partial upload files under the store's incoming directory
+    private long incomingFileSizes() throws IOException {
+        try (var files = Files.walk(uploads)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("chunked-"))
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+    }
+
+    private static InputStream body(String chunk) {
+        return new ByteArrayInputStream(chunk.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String checksum(String chunk) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(chunk.getBytes(StandardCharsets.UTF_8));
+        return "sha256 " + Base64.getEncoder().encodeToString(digest);
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
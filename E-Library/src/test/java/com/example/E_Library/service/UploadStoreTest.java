@@ -0,0 +1,96 @@
+package com.example.E_Library.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UploadStoreTest {
+
+    @TempDir
+    Path uploads;
+
+    private UploadStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new UploadStore(uploads.toString(), "http://localhost");
+    }
+
+    @Test
+    void releaseDuringCountKeepsFile() throws Exception {
+        UploadStore.StoredFile stored = store("same content");
+        Path file = store.localFile(stored.url());
+
+        // The count starts before the new row is written, so it will not see it
+        CompletableFuture<Long> count = new CompletableFuture<>();
+        CompletableFuture<Boolean> deleted = store.deleteIfUnreferenced(stored.url(), () -> count, Runnable::run);
+        // Row written and the upload released while the count is still in flight
+        store.release(stored);
+        count.complete(0L);
+
+        assertThat(deleted.get()).isFalse();
+        assertThat(file).exists();
+    }
+
+    @Test
+    void storeDuringCountKeepsFile() throws Exception {
+        UploadStore.StoredFile first = store("same content");
+        store.release(first);
+
+        CompletableFuture<Long> count = new CompletableFuture<>();
+        CompletableFuture<Boolean> deleted = store.deleteIfUnreferenced(first.url(), () -> count, Runnable::run);
+        UploadStore.StoredFile second = store("same content");
+        count.complete(0L);
+
+        assertThat(second.deduplicated()).isTrue();
+        assertThat(deleted.get()).isFalse();
+        assertThat(store.localFile(first.url())).isNotNull();
+    }
+
+    @Test
+    void pendingUploadKeepsFile() throws Exception {
+        UploadStore.StoredFile stored = store("same content");
+
+        assertThat(deleteIfUnreferenced(stored, 0)).isFalse();
+        assertThat(store.localFile(stored.url())).isNotNull();
+    }
+
+    @Test
+    void releasedBeforeCountIsDeleted() throws Exception {
+        UploadStore.StoredFile stored = store("same content");
+        Path file = store.localFile(stored.url());
+        store.release(stored);
+
+        assertThat(deleteIfUnreferenced(stored, 0)).isTrue();
+        assertThat(file).doesNotExist();
+        // Emptied shard directories go too
+        assertThat(file.getParent().getParent()).doesNotExist();
+    }
+
+    @Test
+    void referencedFileIsKept() throws Exception {
+        UploadStore.StoredFile stored = store("same content");
+        store.release(stored);
+
+        assertThat(deleteIfUnreferenced(stored, 1)).isFalse();
+        assertThat(Files.exists(store.localFile(stored.url()))).isTrue();
+    }
+
+    // Count already known; the delete runs on the calling thread
+    private boolean deleteIfUnreferenced(UploadStore.StoredFile stored, long count) throws Exception {
+        return store.deleteIfUnreferenced(stored.url(), () -> CompletableFuture.completedFuture(count), Runnable::run)
+                .get();
+    }
+
+    private UploadStore.StoredFile store(String content) throws Exception {
+        return store.store(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -3,7 +3,7 @@ import api from "./api";
 const bookService = {
   getAllBooks: async () => {
     try {
-      const response = await api.get("/books");
+      const response = await api.get("/books", { params: { paged: false } });
       return {
         success: true,
         data: response.data,
@@ -57,6 +57,52 @@ const bookService = {
     }
   },
 
+  // Large PDFs: uploaded in chunks that are retried from the server's offset after a failure
+  addBookChunked: async (bookData, pdfFile, onProgress) => {
+    const chunkSize = 8 * 1024 * 1024;
+    const maxRetries = 5;
+    try {
+      const created = await api.post("/books/uploads", null, { params: { size: pdfFile.size } });
+      const uploadId = created.data.upload_id;
+      let offset = created.data.offset;
+      let retries = 0;
+
+      while (offset < pdfFile.size) {
+        const chunk = await pdfFile.slice(offset, offset + chunkSize).arrayBuffer();
+        const digest = await crypto.subtle.digest("SHA-256", chunk);
+        const checksum = btoa(String.fromCharCode(...new Uint8Array(digest)));
+        try {
+          const response = await api.patch(`/books/uploads/${uploadId}`, chunk, {
+            headers: {
+              "Content-Type": "application/octet-stream",
+              "Upload-Offset": offset,
+              "Upload-Checksum": `sha256 ${checksum}`,
+            },
+          });
+          offset = response.data.offset;
+          retries = 0;
+          if (onProgress) onProgress(offset / pdfFile.size);
+        } catch (error) {
+          if (++retries > maxRetries) throw error;
+          // Resume from wherever the server says the upload stands
+          const status = await api.get(`/books/uploads/${uploadId}`);
+          offset = status.data.offset;
+        }
+      }
+
+      const response = await api.post(`/books/uploads/${uploadId}/finalize`, bookData);
+      return {
+        success: true,
+        data: response.data,
+      };
+    } catch (error) {
+      return {
+        success: false,
+        message: error.response?.data || "Failed to add book",
+      };
+    }
+  },
+
   updateBook: async (id, updates) => {
     try {
       const response = await api.put(`/books/update/${id}`, updates);
@@ -87,9 +133,9 @@ const bookService = {
     }
   },
 
-  searchBooks: async (query) => {
+  searchBooks: async (query, fuzzy = false) => {
     try {
-      const response = await api.get(`/books/search?query=${query}`);
+      const response = await api.get("/books/search", { params: { query, fuzzy, paged: false } });
       return {
         success: true,
         data: response.data,
@@ -101,6 +147,21 @@ const bookService = {
       };
     }
   },
+
+  suggestBooks: async (prefix, limit = 10) => {
+    try {
+      const response = await api.get("/books/suggest", { params: { prefix, limit } });
+      return {
+        success: true,
+        data: response.data,
+      };
+    } catch (error) {
+      return {
+        success: false,
+        message: error.response?.data || "Failed to fetch suggestions",
+      };
+    }
+  },
 };
 
 export default bookService;